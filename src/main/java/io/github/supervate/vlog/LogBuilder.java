@@ -0,0 +1,137 @@
+package io.github.supervate.vlog;
+
+import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+import io.github.supervate.vlog.event.MutableLogEvent;
+
+/**
+ * 流式日志构建器
+ * <p>
+ * 由{@link Logger#atInfo()}等方法获取,如: {@code logger.atInfo().arg(latencyMillis).arg(bytes).log("took {} ms, {} bytes")}.
+ * long/double/float参数以原始类型保存在事件中,格式化时直接输出,不装箱也不产生字符串.
+ * <p>
+ * 级别未启用时返回无操作的共享实例;启用时返回线程本地的实例,在{@link #log(String)}之后释放,因此不能跨线程使用或保存.
+ * 构建过程中(如参数求值时)再次获取构建器会得到新的实例,不会互相覆盖;
+ * 获取后未调用log(提前返回或抛出异常)的实例会在下一次获取时被替换,不会继续持有参数,也不会使之后的调用无法复用.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class LogBuilder {
+
+    static final LogBuilder NOOP = new LogBuilder();
+    private static final ThreadLocal<LogBuilder> REUSABLE_BUILDER = ThreadLocal.withInitial(LogBuilder::new);
+
+    private final MutableLogEvent event = new MutableLogEvent(Constants.DEFAULT_REUSABLE_EVENT_ARGUMENT_SIZE);
+    /**
+     * 为null时本构建器不输出(未启用或已输出)
+     */
+    private Logger logger;
+    private Level level;
+    private Marker marker;
+    private int argumentCount;
+    private Throwable throwable;
+
+    private LogBuilder() {
+    }
+
+    static LogBuilder acquire(Logger logger, Level level) {
+        LogBuilder builder = REUSABLE_BUILDER.get();
+        if (builder.logger != null) {
+            // 重入或上一次未调用log,两者无法区分: 由新实例替换线程本地的实例,
+            // 重入的外层调用仍持有原实例不受影响,被遗弃的实例连同参数不再被引用,之后的调用复用新实例
+            builder = new LogBuilder();
+            REUSABLE_BUILDER.set(builder);
+        }
+        builder.logger = logger;
+        builder.level = level;
+        return builder;
+    }
+
+    public LogBuilder arg(Object argument) {
+        if (logger != null) {
+            event.setArgument(argumentCount++, argument);
+        }
+        return this;
+    }
+
+    public LogBuilder arg(long argument) {
+        if (logger != null) {
+            event.setArgument(argumentCount++, argument);
+        }
+        return this;
+    }
+
+    public LogBuilder arg(double argument) {
+        if (logger != null) {
+            event.setArgument(argumentCount++, argument);
+        }
+        return this;
+    }
+
+    public LogBuilder arg(float argument) {
+        if (logger != null) {
+            event.setArgument(argumentCount++, argument);
+        }
+        return this;
+    }
+
+    /**
+     * char不经数值提升,与{@code Logger.info(String, Object)}的输出一致
+     */
+    public LogBuilder arg(char argument) {
+        return arg((Object) argument);
+    }
+
+    public LogBuilder arg(boolean argument) {
+        return arg((Object) argument);
+    }
+
+    /**
+     * @param marker 标记,在输出前交由过滤器链判断(见{@code MarkerFilter})
+     */
+    public LogBuilder marker(Marker marker) {
+        if (logger != null) {
+            this.marker = marker;
+        }
+        return this;
+    }
+
+    public LogBuilder throwable(Throwable throwable) {
+        if (logger != null) {
+            this.throwable = throwable;
+        }
+        return this;
+    }
+
+    /**
+     * 输出事件并释放构建器
+     */
+    public void log(String message) {
+        Logger target = logger;
+        if (target == null) {
+            return;
+        }
+        try {
+            target.appendBuilt(event, level, marker, message, throwable);
+        } finally {
+            reset();
+        }
+    }
+
+    /**
+     * 清除参数等引用,复用前实例不持有上一次调用的任何对象
+     */
+    private void reset() {
+        event.clear();
+        logger = null;
+        level = null;
+        marker = null;
+        argumentCount = 0;
+        throwable = null;
+    }
+
+}
@@ -1,12 +1,35 @@
 package io.github.supervate.vlog;
 
 import io.github.supervate.vlog.appender.Appender;
+import io.github.supervate.vlog.common.Clock;
+import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.SystemClock;
 import io.github.supervate.vlog.event.DefaultLogEvent;
+import io.github.supervate.vlog.event.DeferredArgument;
 import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.event.Marker;
+import io.github.supervate.vlog.event.MutableLogEvent;
+import io.github.supervate.vlog.filter.FilterChain;
+import io.github.supervate.vlog.filter.FilterReply;
+import io.github.supervate.vlog.filter.RateLimitFilter;
+import io.github.supervate.vlog.filter.RepeatSuppressor;
+
+import java.util.function.Supplier;
 
 /**
  * 日志对象
+ * <p>
+ * 级别判断在构建事件之前进行,被禁用级别的调用(固定参数个数的重载)不会产生任何对象分配.
+ * 超过三个参数时请使用{@code isXxxEnabled()}做保护,避免调用方为可变参数分配数组.
+ * <p>
+ * 参数计算代价较高时可使用{@link Supplier}重载,supplier只在级别校验通过后才求值;消息本身代价较高时使用{@code xxxLazy}方法.
+ * 只传一个supplier参数时会匹配固定参数个数的重载,此时同样在调用线程中求值;
+ * 只有开启{@link #setDeferSuppliers}后才会交由格式化时求值.
+ * 数值参数可通过{@link #atInfo()}等返回的{@link LogBuilder}以原始类型传入,避免装箱.
+ * <p>
+ * 日志级别由{@link LoggerFactory}按名称前缀继承计算,与只取决于logger和级别的过滤器一起缓存为级别掩码,
+ * 热路径只读取一次掩码;配置了动态过滤器({@link FilterChain})时,在构建事件之前判断.
  *
  * @author supervate
  * @since 2024/04/27
@@ -15,14 +38,40 @@ import io.github.supervate.vlog.event.LogEvent;
  */
 public class Logger {
 
+    private static final Level[] LEVELS = Level.values();
+    private static final String REPEATED_MESSAGE = "last message repeated {} times";
+    private static final ThreadLocal<ReusableEventHolder> REUSABLE_EVENT = ThreadLocal.withInitial(ReusableEventHolder::new);
+
     private final String name;
     private final Appender<LogEvent> appender;
-    private Level level;
+    /**
+     * 生效级别的序号,由LoggerFactory在级别配置变更时刷新.
+     */
+    private volatile int effectiveLevel;
+    /**
+     * 由生效级别与过滤器链计算的级别掩码(见{@link FilterChain#levelMask}),级别或过滤器变更时刷新.
+     */
+    private volatile int levelMask;
+    private volatile FilterChain filterChain = FilterChain.EMPTY;
+    /**
+     * 是否将参数supplier延迟到格式化时(异步消费线程)求值
+     */
+    private volatile boolean deferSuppliers;
+    /**
+     * 无垃圾模式,复用线程本地事件
+     */
+    private volatile boolean garbageFree;
+    private volatile Clock clock = SystemClock.INSTANCE;
+    /**
+     * 限流与重复消息抑制,在级别校验之后、构建事件之前判断;未配置时为null
+     */
+    private volatile RateLimitFilter rateLimitFilter;
+    private volatile RepeatSuppressor repeatSuppressor;
 
     Logger(String name, Appender<LogEvent> appender, Level level) {
         this.name = name;
         this.appender = appender;
-        this.level = level;
+        updateEffectiveLevel(level);
     }
 
     public String getName() {
@@ -42,7 +91,7 @@ public class Logger {
         return new DefaultLogEvent(
             level,
             Thread.currentThread().getName(),
-            System.currentTimeMillis(),
+            clock.currentTimeMillis(),
             this,
             message,
             resolvedArgs,
@@ -50,38 +99,660 @@ public class Logger {
         );
     }
 
+    /**
+     * 配置了动态过滤器时,以不带标记与模板的调用判断
+     */
+    public boolean isEnabled(Level level) {
+        int mask = levelMask;
+        int bit = 1 << level.ordinal();
+        if ((mask & bit << FilterChain.DYNAMIC_SHIFT) == 0) {
+            return (mask & bit) != 0;
+        }
+        return filterAccepts(mask, bit, level, null, null);
+    }
+
+    /**
+     * 打印路径的级别判断: 只读取一次掩码,级别启用或需要判断动态过滤器时返回true,后者在{@link #admit}中判断.
+     */
+    private boolean mayLog(Level level) {
+        int bit = 1 << level.ordinal();
+        return (levelMask & (bit | bit << FilterChain.DYNAMIC_SHIFT)) != 0;
+    }
+
+    private boolean filterAccepts(int mask, int bit, Level level, Marker marker, String message) {
+        FilterReply reply = filterChain.decide(name, level, marker, message);
+        return reply == FilterReply.ACCEPT || reply == FilterReply.NEUTRAL && (mask & bit) != 0;
+    }
+
+    public boolean isTraceEnabled() {
+        return isEnabled(Level.TRACE);
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public boolean isInfoEnabled() {
+        return isEnabled(Level.INFO);
+    }
+
+    public boolean isWarnEnabled() {
+        return isEnabled(Level.WARN);
+    }
+
+    public boolean isErrorEnabled() {
+        return isEnabled(Level.ERROR);
+    }
+
+    /**
+     * @return 级别启用时返回线程本地的构建器,否则返回无操作的构建器
+     * @see LogBuilder
+     */
+    public LogBuilder atLevel(Level level) {
+        return mayLog(level) ? LogBuilder.acquire(this, level) : LogBuilder.NOOP;
+    }
+
+    public LogBuilder atTrace() {
+        return atLevel(Level.TRACE);
+    }
+
+    public LogBuilder atDebug() {
+        return atLevel(Level.DEBUG);
+    }
+
+    public LogBuilder atInfo() {
+        return atLevel(Level.INFO);
+    }
+
+    public LogBuilder atWarn() {
+        return atLevel(Level.WARN);
+    }
+
+    public LogBuilder atError() {
+        return atLevel(Level.ERROR);
+    }
+
+    public void trace(String message) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message);
+        }
+    }
+
+    public void trace(String message, Object arg) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message, arg);
+        }
+    }
+
+    public void trace(String message, Object arg1, Object arg2) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message, arg1, arg2);
+        }
+    }
+
+    public void trace(String message, Object arg1, Object arg2, Object arg3) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message, arg1, arg2, arg3);
+        }
+    }
+
+    public void trace(String message, Throwable throwable) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message, throwable);
+        }
+    }
+
     public void trace(String message, Object... args) {
-        append(buildLogEvent(Level.TRACE, message, args));
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message, args);
+        }
+    }
+
+    public void traceLazy(Supplier<String> messageSupplier) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, null)) {
+            log(Level.TRACE, messageSupplier.get());
+        }
+    }
+
+    public void trace(String message, Supplier<?>... argSuppliers) {
+        if (mayLog(Level.TRACE) && admit(Level.TRACE, message)) {
+            log(Level.TRACE, message, resolveSuppliers(argSuppliers));
+        }
+    }
+
+    public void debug(String message) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message);
+        }
+    }
+
+    public void debug(String message, Object arg) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message, arg);
+        }
+    }
+
+    public void debug(String message, Object arg1, Object arg2) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message, arg1, arg2);
+        }
+    }
+
+    public void debug(String message, Object arg1, Object arg2, Object arg3) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message, arg1, arg2, arg3);
+        }
+    }
+
+    public void debug(String message, Throwable throwable) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message, throwable);
+        }
     }
 
     public void debug(String message, Object... args) {
-        append(buildLogEvent(Level.DEBUG, message, args));
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message, args);
+        }
+    }
+
+    public void debugLazy(Supplier<String> messageSupplier) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, null)) {
+            log(Level.DEBUG, messageSupplier.get());
+        }
+    }
+
+    public void debug(String message, Supplier<?>... argSuppliers) {
+        if (mayLog(Level.DEBUG) && admit(Level.DEBUG, message)) {
+            log(Level.DEBUG, message, resolveSuppliers(argSuppliers));
+        }
+    }
+
+    public void info(String message) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message);
+        }
+    }
+
+    public void info(String message, Object arg) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message, arg);
+        }
+    }
+
+    public void info(String message, Object arg1, Object arg2) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message, arg1, arg2);
+        }
+    }
+
+    public void info(String message, Object arg1, Object arg2, Object arg3) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message, arg1, arg2, arg3);
+        }
+    }
+
+    public void info(String message, Throwable throwable) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message, throwable);
+        }
     }
 
     public void info(String message, Object... args) {
-        append(buildLogEvent(Level.INFO, message, args));
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message, args);
+        }
+    }
+
+    public void infoLazy(Supplier<String> messageSupplier) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, null)) {
+            log(Level.INFO, messageSupplier.get());
+        }
+    }
+
+    public void info(String message, Supplier<?>... argSuppliers) {
+        if (mayLog(Level.INFO) && admit(Level.INFO, message)) {
+            log(Level.INFO, message, resolveSuppliers(argSuppliers));
+        }
+    }
+
+    public void warn(String message) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message);
+        }
+    }
+
+    public void warn(String message, Object arg) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message, arg);
+        }
+    }
+
+    public void warn(String message, Object arg1, Object arg2) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message, arg1, arg2);
+        }
+    }
+
+    public void warn(String message, Object arg1, Object arg2, Object arg3) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message, arg1, arg2, arg3);
+        }
+    }
+
+    public void warn(String message, Throwable throwable) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message, throwable);
+        }
     }
 
     public void warn(String message, Object... args) {
-        append(buildLogEvent(Level.WARN, message, args));
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message, args);
+        }
+    }
+
+    public void warnLazy(Supplier<String> messageSupplier) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, null)) {
+            log(Level.WARN, messageSupplier.get());
+        }
+    }
+
+    public void warn(String message, Supplier<?>... argSuppliers) {
+        if (mayLog(Level.WARN) && admit(Level.WARN, message)) {
+            log(Level.WARN, message, resolveSuppliers(argSuppliers));
+        }
+    }
+
+    public void error(String message) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message);
+        }
+    }
+
+    public void error(String message, Object arg) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message, arg);
+        }
+    }
+
+    public void error(String message, Object arg1, Object arg2) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message, arg1, arg2);
+        }
+    }
+
+    public void error(String message, Object arg1, Object arg2, Object arg3) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message, arg1, arg2, arg3);
+        }
+    }
+
+    public void error(String message, Throwable throwable) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message, throwable);
+        }
     }
 
     public void error(String message, Object... args) {
-        append(buildLogEvent(Level.ERROR, message, args));
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message, args);
+        }
+    }
+
+    public void errorLazy(Supplier<String> messageSupplier) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, null)) {
+            log(Level.ERROR, messageSupplier.get());
+        }
+    }
+
+    public void error(String message, Supplier<?>... argSuppliers) {
+        if (mayLog(Level.ERROR) && admit(Level.ERROR, message)) {
+            log(Level.ERROR, message, resolveSuppliers(argSuppliers));
+        }
+    }
+
+    /**
+     * 级别校验通过后才会调用,延迟模式下包装为{@link DeferredArgument},交由格式化时求值.
+     */
+    private Object[] resolveSuppliers(Supplier<?>[] argSuppliers) {
+        if (argSuppliers == null) {
+            return null;
+        }
+        Object[] args = new Object[argSuppliers.length];
+        for (int i = 0; i < argSuppliers.length; i++) {
+            Supplier<?> argSupplier = argSuppliers[i];
+            if (argSupplier == null) {
+                continue;
+            }
+            args[i] = resolveSupplier(argSupplier);
+        }
+        return args;
+    }
+
+    private Object resolveSupplier(Supplier<?> argSupplier) {
+        return deferSuppliers ? new DeferredArgument(argSupplier) : argSupplier.get();
+    }
+
+    /**
+     * 作为普通参数传入的supplier(如只传一个supplier时匹配了固定参数个数的重载)与supplier重载一样在调用线程中求值.
+     */
+    private Object resolveArgument(Object arg) {
+        return arg instanceof Supplier ? resolveSupplier((Supplier<?>) arg) : arg;
+    }
+
+    /**
+     * @return 含supplier时返回求值后的副本,不修改调用方的数组
+     */
+    private Object[] resolveArguments(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        Object[] resolved = args;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Supplier) {
+                if (resolved == args) {
+                    resolved = args.clone();
+                }
+                resolved[i] = resolveSupplier((Supplier<?>) args[i]);
+            }
+        }
+        return resolved;
+    }
+
+    private boolean admit(Level level, String message) {
+        return admit(level, null, message);
+    }
+
+    /**
+     * 动态过滤器、重复消息抑制与限流,不分配对象.被抑制的重复消息在放行下一条消息之前汇总输出.
+     * <p>
+     * 按消息判断重复({@link RepeatSuppressor.Match#MESSAGE})需要参数,重复抑制与限流推迟到{@link #dispatch}中进行.
+     *
+     * @param marker  标记,未指定时为null
+     * @param message 消息模板,未知(如消息supplier)时为null
+     * @return 是否放行
+     */
+    private boolean admit(Level level, Marker marker, String message) {
+        int mask = levelMask;
+        int bit = 1 << level.ordinal();
+        if ((mask & bit << FilterChain.DYNAMIC_SHIFT) != 0 && !filterAccepts(mask, bit, level, marker, message)) {
+            return false;
+        }
+        RepeatSuppressor suppressor = repeatSuppressor;
+        if (suppressor != null && suppressor.getMatch() == RepeatSuppressor.Match.MESSAGE) {
+            return true;
+        }
+        return throttle(suppressor, level, message, null, 0);
+    }
+
+    private boolean throttle(RepeatSuppressor suppressor, Level level, String message, Object[] args, int argCount) {
+        if (suppressor != null && message != null) {
+            long verdict = suppressor.check(level, message, args, argCount);
+            if (verdict == RepeatSuppressor.SUPPRESS) {
+                return false;
+            }
+            appendRepeatSummary(verdict);
+        }
+        RateLimitFilter filter = rateLimitFilter;
+        return filter == null || filter.tryAcquire(this, message);
+    }
+
+    /**
+     * 将事件交给appender,按消息判断重复时在此进行重复抑制与限流
+     */
+    private void dispatch(LogEvent event) {
+        RepeatSuppressor suppressor = repeatSuppressor;
+        if (suppressor != null && suppressor.getMatch() == RepeatSuppressor.Match.MESSAGE
+            && !throttle(suppressor, event.getLevel(), event.getMessage(), event.getArguments(), event.getArgumentCount())) {
+            return;
+        }
+        appender.append(event);
+    }
+
+    /**
+     * 输出被抑制次数的汇总,不经过重复抑制与限流;可能发生在可复用事件填充期间,因此总是新建事件
+     */
+    private void appendRepeatSummary(long verdict) {
+        if (verdict == RepeatSuppressor.PASS || verdict == RepeatSuppressor.SUPPRESS) {
+            return;
+        }
+        appender.append(buildLogEvent(
+            RepeatSuppressor.suppressedLevel(verdict),
+            REPEATED_MESSAGE,
+            new Object[]{ RepeatSuppressor.suppressedCount(verdict) }
+        ));
+    }
+
+    /**
+     * 立即输出尚未汇报的被抑制重复次数,由{@link LoggerFactory#shutdown()}在停止appender之前调用
+     */
+    public void flushRepeats() {
+        flushRepeats(true);
+    }
+
+    /**
+     * @param force 为false时只汇报窗口已到期的重复,供后台定时调用
+     */
+    void flushRepeats(boolean force) {
+        RepeatSuppressor suppressor = repeatSuppressor;
+        if (suppressor != null) {
+            appendRepeatSummary(suppressor.flush(force));
+        }
+    }
+
+    /*
+     * 以下log方法的调用方需保证级别已经通过校验.
+     * 无垃圾模式下复用线程本地的事件,参数直接写入其预分配数组,不创建参数数组与事件对象.
+     */
+
+    private void log(Level level, String message) {
+        ReusableEventHolder holder = acquireReusableEvent();
+        if (holder == null) {
+            dispatch(buildLogEvent(level, message, null));
+            return;
+        }
+        fillAndAppend(holder, level, message);
+    }
+
+    private void log(Level level, String message, Object arg) {
+        arg = resolveArgument(arg);
+        ReusableEventHolder holder = acquireReusableEvent();
+        if (holder == null) {
+            dispatch(buildLogEvent(level, message, new Object[]{ arg }));
+            return;
+        }
+        holder.event.setArgument(0, arg);
+        fillAndAppend(holder, level, message);
+    }
+
+    private void log(Level level, String message, Object arg1, Object arg2) {
+        arg1 = resolveArgument(arg1);
+        arg2 = resolveArgument(arg2);
+        ReusableEventHolder holder = acquireReusableEvent();
+        if (holder == null) {
+            dispatch(buildLogEvent(level, message, new Object[]{ arg1, arg2 }));
+            return;
+        }
+        holder.event.setArgument(0, arg1);
+        holder.event.setArgument(1, arg2);
+        fillAndAppend(holder, level, message);
+    }
+
+    private void log(Level level, String message, Object arg1, Object arg2, Object arg3) {
+        arg1 = resolveArgument(arg1);
+        arg2 = resolveArgument(arg2);
+        arg3 = resolveArgument(arg3);
+        ReusableEventHolder holder = acquireReusableEvent();
+        if (holder == null) {
+            dispatch(buildLogEvent(level, message, new Object[]{ arg1, arg2, arg3 }));
+            return;
+        }
+        holder.event.setArgument(0, arg1);
+        holder.event.setArgument(1, arg2);
+        holder.event.setArgument(2, arg3);
+        fillAndAppend(holder, level, message);
+    }
+
+    private void log(Level level, String message, Object[] args) {
+        args = resolveArguments(args);
+        ReusableEventHolder holder = acquireReusableEvent();
+        if (holder == null) {
+            dispatch(buildLogEvent(level, message, args));
+            return;
+        }
+        holder.event.setArguments(args);
+        fillAndAppend(holder, level, message);
+    }
+
+    /**
+     * @return 线程本地的可复用事件,未开启无垃圾模式或重入(如参数的toString中又打印日志)时返回null
+     */
+    private ReusableEventHolder acquireReusableEvent() {
+        if (!garbageFree) {
+            return null;
+        }
+        ReusableEventHolder holder = REUSABLE_EVENT.get();
+        if (holder.inUse) {
+            return null;
+        }
+        holder.inUse = true;
+        return holder;
+    }
+
+    private void fillAndAppend(ReusableEventHolder holder, Level level, String message) {
+        MutableLogEvent event = holder.event;
+        try {
+            event.set(level, Thread.currentThread().getName(), clock.currentTimeMillis(), this, message);
+            event.resolveThrowable();
+            dispatch(event);
+        } finally {
+            event.clear();
+            holder.inUse = false;
+        }
+    }
+
+    /**
+     * 输出{@link LogBuilder}填充的事件,未指定异常时与其他重载一样识别最后一个异常参数
+     */
+    void appendBuilt(MutableLogEvent event, Level level, Marker marker, String message, Throwable throwable) {
+        if (!admit(level, marker, message)) {
+            return;
+        }
+        event.set(level, Thread.currentThread().getName(), clock.currentTimeMillis(), this, message);
+        if (throwable != null) {
+            event.setThrowable(throwable);
+        } else {
+            event.resolveThrowable();
+        }
+        dispatch(event);
     }
 
     public void append(DefaultLogEvent event) {
-        if (event.getLevel().compareTo(level) >= 0) {
+        if (isEnabled(event.getLevel())) {
             appender.append(event);
         }
     }
 
+    /**
+     * @return 生效的日志级别(自身配置或继承自上级)
+     */
     public Level getLevel() {
-        return level;
+        return LEVELS[effectiveLevel];
     }
 
+    /**
+     * 配置本logger的级别,会同时作用于所有未单独配置级别的下级logger.
+     *
+     * @param level 级别,为null时移除配置,恢复继承上级
+     * @see LoggerFactory#setLevel(String, Level)
+     */
     public void setLevel(Level level) {
-        this.level = level;
+        LoggerFactory.setLevel(name, level);
+        // 未在LoggerFactory中注册的logger(直接创建)也需生效
+        updateEffectiveLevel(LoggerFactory.getEffectiveLevel(name));
+    }
+
+    public boolean isDeferSuppliers() {
+        return deferSuppliers;
+    }
+
+    /**
+     * 开启后,参数supplier不在调用线程求值,而是在格式化时(异步appender的消费线程)求值,事件被丢弃时不会求值.
+     * <p>
+     * 注意: 仅当supplier捕获的状态可以被其他线程安全读取时才可开启;延迟的参数不会被识别为异常参数.
+     */
+    public void setDeferSuppliers(boolean deferSuppliers) {
+        this.deferSuppliers = deferSuppliers;
+    }
+
+    public boolean isGarbageFree() {
+        return garbageFree;
+    }
+
+    /**
+     * 开启后,日志事件填充进线程本地的{@link MutableLogEvent},不再为每次调用创建事件与参数数组.
+     * 异步appender会将其复制进自身预分配的事件槽(见{@code AsyncAppender#setGarbageFree}).
+     */
+    public void setGarbageFree(boolean garbageFree) {
+        this.garbageFree = garbageFree;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @param clock 提供事件时间戳的时钟,如{@link io.github.supervate.vlog.common.CachedClock}
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock == null ? SystemClock.INSTANCE : clock;
+    }
+
+    public RateLimitFilter getRateLimitFilter() {
+        return rateLimitFilter;
+    }
+
+    /**
+     * @param rateLimitFilter 限流,可在多个logger间共享(按模板或logger区分令牌桶);为null时不限流
+     */
+    public void setRateLimitFilter(RateLimitFilter rateLimitFilter) {
+        this.rateLimitFilter = rateLimitFilter;
+    }
+
+    public RepeatSuppressor getRepeatSuppressor() {
+        return repeatSuppressor;
+    }
+
+    /**
+     * @param repeatSuppressor 连续重复消息抑制,记录的是本logger的状态,不能在logger间共享;为null时不抑制
+     */
+    public void setRepeatSuppressor(RepeatSuppressor repeatSuppressor) {
+        this.repeatSuppressor = repeatSuppressor;
+    }
+
+    public FilterChain getFilterChain() {
+        return filterChain;
+    }
+
+    /**
+     * 配置构建事件之前的过滤器链,通常由{@link LoggerFactory#setFilterChain(FilterChain)}统一配置.
+     *
+     * @param filterChain 过滤器链,为null时不过滤
+     */
+    public synchronized void setFilterChain(FilterChain filterChain) {
+        this.filterChain = filterChain == null ? FilterChain.EMPTY : filterChain;
+        this.levelMask = this.filterChain.levelMask(name, LEVELS[effectiveLevel]);
+    }
+
+    synchronized void updateEffectiveLevel(Level level) {
+        this.effectiveLevel = level.ordinal();
+        this.levelMask = filterChain.levelMask(name, level);
+    }
+
+    private static final class ReusableEventHolder {
+        private final MutableLogEvent event = new MutableLogEvent(Constants.DEFAULT_REUSABLE_EVENT_ARGUMENT_SIZE);
+        private boolean inUse;
     }
 
 }
@@ -1,19 +1,51 @@
 package io.github.supervate.vlog;
 
+import io.github.supervate.vlog.appender.Appender;
 import io.github.supervate.vlog.appender.AppenderCombiner;
+import io.github.supervate.vlog.appender.AsyncAppender;
 import io.github.supervate.vlog.appender.DefaultFileAppender;
 import io.github.supervate.vlog.appender.DefaultPrintStreamAppender;
+import io.github.supervate.vlog.appender.OverflowPolicy;
+import io.github.supervate.vlog.appender.PipelinedAppender;
+import io.github.supervate.vlog.appender.RolloverGranularity;
+import io.github.supervate.vlog.appender.ShardMergeReader;
+import io.github.supervate.vlog.appender.ShardedFileAppender;
+import io.github.supervate.vlog.common.CachedClock;
+import io.github.supervate.vlog.common.Clock;
 import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.SystemClock;
 import io.github.supervate.vlog.common.SystemUtils;
+import io.github.supervate.vlog.common.ThrowableUtils;
+import io.github.supervate.vlog.common.WaitStrategy;
 import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.event.Marker;
+import io.github.supervate.vlog.filter.Filter;
+import io.github.supervate.vlog.filter.FilterChain;
+import io.github.supervate.vlog.filter.FilterReply;
+import io.github.supervate.vlog.filter.LoggerNameFilter;
+import io.github.supervate.vlog.filter.MarkerFilter;
+import io.github.supervate.vlog.filter.RateLimitFilter;
+import io.github.supervate.vlog.filter.RepeatSuppressor;
+import io.github.supervate.vlog.layout.AbstractLayout;
 import io.github.supervate.vlog.layout.DefaultLineLayout;
 import io.github.supervate.vlog.layout.Layout;
+import io.github.supervate.vlog.layout.MessageTemplateCache;
+import io.github.supervate.vlog.layout.StackTraceRenderer;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static io.github.supervate.vlog.common.Constants.SYSTEM_PROPERTY_LOG_LAYOUT_IMPL;
 import static io.github.supervate.vlog.common.SystemUtils.getSysProperty;
@@ -32,6 +64,77 @@ import static io.github.supervate.vlog.common.SystemUtils.getSysProperty;
  * 4. vt.vlog.file.size 产生的日志文件大小,超过多少字节后,产生新的文件,默认为0,不限制.(单位字节)
  * <li>
  * 5. vt.vlog.layout.impl 日志格式输出实现类,默认是DefaultLineLayout,支持用户自定义.
+ * 内置PatternLayout时,vt.vlog.layout.pattern 配置输出模式,如: %d{HH:mm:ss.SSS} %t %-5level %logger{20} %msg%n;
+ * 内置DefaultJsonLayout时,vt.vlog.layout.json.epoch 是否将事件时间输出为毫秒时间戳,默认false.
+ * <li>
+ * 6. vt.vlog.level.{name} 按logger名称前缀配置级别,如: vt.vlog.level.com.acme.db=DEBUG, vt.vlog.level.root=WARN.
+ * 未配置的logger继承最近的上级配置,都未配置时使用vt.vlog.level(root).
+ * <li>
+ * 7. vt.vlog.supplier.deferred 是否将参数supplier延迟到异步消费线程求值,默认false.
+ * <li>
+ * 8. vt.vlog.garbage.free 是否开启无垃圾模式(复用日志事件),默认false.
+ * vt.vlog.garbage.free.pool.size 无垃圾模式下每个异步appender预分配的事件槽数量,默认与队列容量一致.
+ * <li>
+ * 9. vt.vlog.clock 事件时间戳的时钟: system(默认)/cached(1ms精度缓存)/coarse(10ms精度缓存)/自定义Clock实现类名.
+ * <li>
+ * 10. 默认的控制台/文件输出共用一个异步队列与消费线程,以下配置作用于该队列.
+ * vt.vlog.async.queue.size 异步appender的环形队列容量,默认65536;
+ * vt.vlog.async.wait.strategy 消费线程等待策略: blocking(默认)/sleeping/yielding/busy_spin;
+ * vt.vlog.async.queue.bytes 队列中事件估算字节数上限,默认0,不限制;
+ * vt.vlog.async.batch.size 消费线程每批最多写出的事件数,默认256;
+ * vt.vlog.async.priority.level 不低于该级别的事件走优先通道,不排在积压的普通事件之后,默认不开启;
+ * vt.vlog.async.priority.queue.size 优先队列容量,默认1024.
+ * <li>
+ * 11. vt.vlog.async.overflow.policy 队列满时的处理策略: block(默认)/block_timeout/drop_new/drop_oldest/discard_below_level;
+ * vt.vlog.async.overflow.timeout block_timeout的最长阻塞时间,默认100(单位毫秒);
+ * vt.vlog.async.discard.level discard_below_level下可丢弃的级别上限(不含),默认WARN;
+ * vt.vlog.async.discard.ratio discard_below_level下开始丢弃的队列使用率,默认0.8;
+ * vt.vlog.async.discard.report.interval 丢弃汇总的输出间隔,默认10000,<=0不输出(单位毫秒).
+ * <li>
+ * 12. vt.vlog.async.stop.timeout 停止时等待剩余事件输出的最长时间,默认3000(单位毫秒);
+ * vt.vlog.shutdown.hook 是否注册JVM shutdown hook,在退出时调用{@link #shutdown()},默认true.
+ * <li>
+ * 13. vt.vlog.file.buffer.size 日志文件写缓冲大小,默认262144(单位字节);
+ * vt.vlog.file.immediate.flush 是否每批事件结束时写出,默认true;
+ * vt.vlog.file.flush.interval 关闭immediate.flush时数据在缓冲中停留的最长时间,默认1000(单位毫秒);
+ * vt.vlog.file.flush.level 不低于该级别的事件立即写出,默认ERROR,NONE则不按级别写出.
+ * <li>
+ * 14. vt.vlog.file.mmap 日志文件是否使用内存映射写入,默认false;
+ * vt.vlog.file.mmap.region.size 内存映射窗口大小,默认33554432(单位字节).
+ * <li>
+ * 15. vt.vlog.file.rollover 日志文件按时间滚动的粒度: day(默认)/hour/minute.
+ * <li>
+ * 16. vt.vlog.layout.template.cache.size 预解析消息模板的缓存槽位数,默认4096,0则不缓存.
+ * <li>
+ * 17. vt.vlog.stack.max.depth 每个异常最多输出的堆栈帧数,默认0,不限制;
+ * vt.vlog.stack.filter.packages 不输出的堆栈帧的类名前缀,逗号分隔,如: sun.reflect.,java.lang.reflect.;
+ * vt.vlog.stack.cache.size 渲染结果的缓存槽位数,默认256,0则不缓存;
+ * vt.vlog.stack.dedup 重复的异常是否只输出首行及对首次完整堆栈的引用,默认false.
+ * <li>
+ * 18. vt.vlog.rate.limit 每秒允许的日志调用数,在构建事件之前判断,默认0,不限流;
+ * vt.vlog.rate.limit.burst 令牌桶容量,默认与每秒调用数一致;
+ * vt.vlog.rate.limit.key 限流粒度: template(默认,按消息模板即调用点)/logger.
+ * <li>
+ * 19. vt.vlog.repeat.suppress 是否抑制连续重复的消息,并以last message repeated N times汇总,默认false;
+ * vt.vlog.repeat.match 判断重复的方式: message(默认,级别、模板与参数都相同)/template(级别与模板相同,与参数无关,在构建事件之前判断);
+ * vt.vlog.repeat.allowed 连续重复时仍然输出的次数,默认0;
+ * vt.vlog.repeat.window 同一消息重复持续超过该时长时汇总输出一次,重复停止后也在窗口到期时汇总,默认10000,<=0不限制(单位毫秒).
+ * 未汇总的重复次数在{@link #shutdown()}时输出.
+ * <li>
+ * 20. 构建事件之前的过滤器链,按以下顺序组成,也可通过{@link #setFilterChain(FilterChain)}配置:
+ * vt.vlog.filter.deny.loggers 丢弃的logger名称前缀,逗号分隔;
+ * vt.vlog.filter.deny.markers 丢弃带有这些标记的日志,逗号分隔;
+ * vt.vlog.filter.impl 自定义{@link Filter}实现类名,逗号分隔,需有无参构造器.
+ * <li>
+ * 21. vt.vlog.file.shards 日志文件的分片数,大于1时按分区写入多个分片文件(如: 2024-04-27-shard3),
+ * 每个分片由自己的消费线程格式化并写出,默认0,不分片;
+ * vt.vlog.file.shard.key 分区方式: logger(默认,同一logger有序)/thread(同一线程有序).
+ * 上述异步队列与文件写出的配置作用于每个分片,合并查看见{@link ShardMergeReader}.
+ * <li>
+ * 22. vt.vlog.file.pipeline 不分片时,日志文件以流水线方式输出: producer(在调用线程中格式化)/workers(在格式化线程池中),
+ * 由一个写出线程按调用顺序写入同一个文件,默认不开启;开启后统一分发改为在调用线程中同步进行,控制台使用自己的异步队列.
+ * vt.vlog.file.pipeline.workers workers模式下格式化线程数,默认2;
+ * vt.vlog.file.pipeline.capacity 流水线的槽位数,默认4096.
  *
  * @author supervate
  * @since 2024/04/27
@@ -40,31 +143,72 @@ import static io.github.supervate.vlog.common.SystemUtils.getSysProperty;
  */
 public class LoggerFactory {
 
+    public static final String ROOT_LOGGER_NAME = "root";
+
     private static final ConcurrentHashMap<String, Logger> LOGGER_MAP = new ConcurrentHashMap<>();
+    /**
+     * logger名称(前缀) -> 配置的级别
+     */
+    private static final ConcurrentHashMap<String, Level> LEVEL_MAP = new ConcurrentHashMap<>();
 
     private static AppenderCombiner<LogEvent> APPENDER_COMBINER;
 
     volatile private static Level LEVEL;
 
+    volatile private static Clock CLOCK = SystemClock.INSTANCE;
+
+    /**
+     * 所有logger共享的限流(按模板或logger区分令牌桶),未配置时为null
+     */
+    volatile private static RateLimitFilter RATE_LIMIT_FILTER;
+
+    volatile private static FilterChain FILTER_CHAIN = FilterChain.EMPTY;
+
+    /**
+     * 定时汇总已停止的重复消息,未开启重复抑制或不限制窗口时为null
+     */
+    private static ScheduledExecutorService REPEAT_FLUSHER;
+
     static {
         init();
     }
 
     private static void init() {
         // appender set
+        // 单个队列/消费线程异步分发,各输出端同步写出并共享同一个layout的格式化结果;
+        // 文件流水线模式下在调用线程中同步分发,由流水线并行格式化
+        Optional<PipelinedAppender.FormatMode> pipelineMode = getPipelineMode();
         APPENDER_COMBINER = new AppenderCombiner<>();
+        APPENDER_COMBINER.setAsync(!pipelineMode.isPresent());
+        if (APPENDER_COMBINER.isAsync()) {
+            configAsync(APPENDER_COMBINER);
+        }
+        SystemUtils
+            .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_LAYOUT_TEMPLATE_CACHE_SIZE)
+            .ifPresent(size -> MessageTemplateCache.setShared(new MessageTemplateCache(size)));
+        configStackTrace();
+        Layout<LogEvent> layout = buildLayout();
         DefaultPrintStreamAppender defaultPrintStreamAppender = new DefaultPrintStreamAppender(
-            buildLayout(),
+            layout,
             System.out,
             System.err
         );
+        defaultPrintStreamAppender.setAsync(pipelineMode.isPresent());
+        if (defaultPrintStreamAppender.isAsync()) {
+            configAsync(defaultPrintStreamAppender);
+        }
         defaultPrintStreamAppender.start();
         APPENDER_COMBINER.addAppender(defaultPrintStreamAppender);
         SystemUtils
             .getSysPropertyPath(Constants.SYSTEM_PROPERTY_LOG_DIR)
             .ifPresent(path -> {
+                int shards = SystemUtils.getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_SHARDS).orElse(0);
+                if (shards > 1) {
+                    APPENDER_COMBINER.addAppender(buildShardedFileAppender(layout, path, shards));
+                    return;
+                }
                 DefaultFileAppender defaultFileAppender = new DefaultFileAppender(
-                    buildLayout(),
+                    layout,
                     path,
                     SystemUtils
                         .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_RETENTION)
@@ -73,12 +217,351 @@ public class LoggerFactory {
                         .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_SIZE)
                         .orElse(Constants.DEFAULT_LOG_FILE_SIZE)
                 );
+                defaultFileAppender.setAsync(false);
+                configFileBuffer(defaultFileAppender);
+                if (pipelineMode.isPresent()) {
+                    APPENDER_COMBINER.addAppender(buildPipelinedAppender(defaultFileAppender, pipelineMode.get()));
+                    return;
+                }
                 defaultFileAppender.start();
                 APPENDER_COMBINER.addAppender(defaultFileAppender);
             });
         APPENDER_COMBINER.start();
-        // level set
-        LEVEL = getLevelConfig();
+        // level and clock set
+        synchronized (LoggerFactory.class) {
+            CLOCK = buildClock();
+            RATE_LIMIT_FILTER = buildRateLimitFilter();
+            FILTER_CHAIN = buildFilterChain();
+            Map<String, Level> levelPrefixConfig = getLevelPrefixConfig();
+            // root也可通过vt.vlog.level.root配置
+            Level rootLevel = levelPrefixConfig.remove(ROOT_LOGGER_NAME);
+            LEVEL = rootLevel != null ? rootLevel : getLevelConfig();
+            LEVEL_MAP.clear();
+            LEVEL_MAP.putAll(levelPrefixConfig);
+            refreshLevels();
+            for (Logger logger : LOGGER_MAP.values()) {
+                logger.setClock(CLOCK);
+                logger.setFilterChain(FILTER_CHAIN);
+                configThrottle(logger);
+            }
+            startRepeatFlusher();
+        }
+        // 进程退出时输出剩余的日志
+        if (SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_SHUTDOWN_HOOK).orElse(true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(LoggerFactory::shutdown, "vlog-shutdown"));
+        }
+    }
+
+    /**
+     * 停止日志输出: 先输出未汇总的重复消息次数,再停止异步分发(在超时时间内输出队列中剩余的事件),再依次停止各输出端(写出缓冲并关闭文件).
+     * <p>
+     * 默认通过JVM shutdown hook调用,可重复调用.
+     */
+    public static synchronized void shutdown() {
+        AppenderCombiner<LogEvent> appenderCombiner = APPENDER_COMBINER;
+        if (appenderCombiner == null) {
+            return;
+        }
+        if (REPEAT_FLUSHER != null) {
+            REPEAT_FLUSHER.shutdownNow();
+            REPEAT_FLUSHER = null;
+        }
+        for (Logger logger : LOGGER_MAP.values()) {
+            logger.flushRepeats();
+        }
+        appenderCombiner.stop();
+        for (Appender<LogEvent> appender : appenderCombiner.getAppenders()) {
+            try {
+                appender.stop();
+            } catch (Exception e) {
+                System.err.println(ThrowableUtils.throwableToStr(e));
+            }
+        }
+    }
+
+    private static Clock buildClock() {
+        String clockName = getSysProperty(Constants.SYSTEM_PROPERTY_LOG_CLOCK).orElse("system");
+        switch (clockName) {
+            case "system":
+                return SystemClock.INSTANCE;
+            case "cached":
+                return CachedClock.cached();
+            case "coarse":
+                return CachedClock.coarse();
+            default:
+                try {
+                    Class<?> clockClazz = Thread.currentThread().getContextClassLoader().loadClass(clockName);
+                    return (Clock) clockClazz.getConstructor().newInstance();
+                } catch (Exception e) {
+                    throw new IllegalArgumentException("Invalid clock class: " + clockName, e);
+                }
+        }
+    }
+
+    private static RateLimitFilter buildRateLimitFilter() {
+        double permitsPerSecond = getSysProperty(Constants.SYSTEM_PROPERTY_LOG_RATE_LIMIT).map(Double::parseDouble).orElse(0D);
+        if (permitsPerSecond <= 0) {
+            return null;
+        }
+        return new RateLimitFilter(
+            permitsPerSecond,
+            SystemUtils
+                .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_RATE_LIMIT_BURST)
+                .orElse((int) Math.max(1, Math.ceil(permitsPerSecond))),
+            getSysProperty(Constants.SYSTEM_PROPERTY_LOG_RATE_LIMIT_KEY).map(RateLimitFilter.Key::of).orElse(RateLimitFilter.Key.TEMPLATE)
+        );
+    }
+
+    private static FilterChain buildFilterChain() {
+        List<Filter> filters = new ArrayList<>();
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILTER_DENY_LOGGERS)
+            .map(LoggerFactory::splitNames)
+            .ifPresent(prefixes -> filters.add(LoggerNameFilter.deny(prefixes)));
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILTER_DENY_MARKERS)
+            .map(LoggerFactory::splitNames)
+            .ifPresent(names -> {
+                Marker[] markers = new Marker[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    markers[i] = Marker.get(names[i]);
+                }
+                filters.add(new MarkerFilter(markers, FilterReply.DENY, FilterReply.NEUTRAL));
+            });
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILTER_IMPL)
+            .map(LoggerFactory::splitNames)
+            .ifPresent(classNames -> {
+                for (String className : classNames) {
+                    filters.add(loadFilter(className));
+                }
+            });
+        return FilterChain.of(filters);
+    }
+
+    private static Filter loadFilter(String className) {
+        try {
+            Class<?> filterClazz = Thread.currentThread().getContextClassLoader().loadClass(className);
+            return (Filter) filterClazz.getConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid filter class: " + className, e);
+        }
+    }
+
+    private static String[] splitNames(String value) {
+        return Arrays
+            .stream(value.split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .toArray(String[]::new);
+    }
+
+    /**
+     * 配置所有logger(包括之后创建的)共享的过滤器链,并重新计算各logger缓存的级别掩码.
+     *
+     * @param filterChain 过滤器链,为null时不过滤
+     */
+    public static synchronized void setFilterChain(FilterChain filterChain) {
+        FILTER_CHAIN = filterChain == null ? FilterChain.EMPTY : filterChain;
+        for (Logger logger : LOGGER_MAP.values()) {
+            logger.setFilterChain(FILTER_CHAIN);
+        }
+    }
+
+    public static FilterChain getFilterChain() {
+        return FILTER_CHAIN;
+    }
+
+    /**
+     * 限流共享同一个实例,重复消息抑制每个logger一个实例
+     */
+    private static void configThrottle(Logger logger) {
+        logger.setRateLimitFilter(RATE_LIMIT_FILTER);
+        boolean suppressRepeats = SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_REPEAT_SUPPRESS).orElse(false);
+        logger.setRepeatSuppressor(
+            suppressRepeats
+                ? new RepeatSuppressor(
+                    SystemUtils.getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_REPEAT_ALLOWED).orElse(0),
+                    getRepeatWindow(),
+                    getRepeatMatch()
+                )
+                : null
+        );
+    }
+
+    private static RepeatSuppressor.Match getRepeatMatch() {
+        return getSysProperty(Constants.SYSTEM_PROPERTY_LOG_REPEAT_MATCH).map(RepeatSuppressor.Match::of).orElse(RepeatSuppressor.Match.MESSAGE);
+    }
+
+    private static long getRepeatWindow() {
+        return SystemUtils.getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_REPEAT_WINDOW).orElse(Constants.DEFAULT_REPEAT_WINDOW);
+    }
+
+    /**
+     * 重复停止后没有新的调用时,由后台线程在窗口到期后汇总输出
+     */
+    private static void startRepeatFlusher() {
+        if (REPEAT_FLUSHER != null) {
+            REPEAT_FLUSHER.shutdownNow();
+            REPEAT_FLUSHER = null;
+        }
+        long window = getRepeatWindow();
+        if (!SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_REPEAT_SUPPRESS).orElse(false) || window <= 0) {
+            return;
+        }
+        REPEAT_FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vlog-repeat-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        REPEAT_FLUSHER.scheduleWithFixedDelay(() -> {
+            for (Logger logger : LOGGER_MAP.values()) {
+                try {
+                    logger.flushRepeats(false);
+                } catch (Exception e) {
+                    System.err.println(ThrowableUtils.throwableToStr(e));
+                }
+            }
+        }, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean isGarbageFree() {
+        return SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_GARBAGE_FREE).orElse(false);
+    }
+
+    private static void configStackTrace() {
+        String[] filteredPackages = getSysProperty(Constants.SYSTEM_PROPERTY_LOG_STACK_FILTER_PACKAGES)
+            .map(LoggerFactory::splitNames)
+            .orElse(null);
+        StackTraceRenderer.setShared(new StackTraceRenderer(
+            SystemUtils.getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_STACK_MAX_DEPTH).orElse(0),
+            filteredPackages,
+            SystemUtils.getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_STACK_CACHE_SIZE).orElse(StackTraceRenderer.DEFAULT_CACHE_SIZE),
+            SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_STACK_DEDUP).orElse(false)
+        ));
+    }
+
+    /**
+     * 分片各自异步写出,统一分发线程只负责按分区入队
+     */
+    private static ShardedFileAppender buildShardedFileAppender(Layout<LogEvent> layout, Path path, int shards) {
+        ShardedFileAppender shardedFileAppender = new ShardedFileAppender(
+            layout,
+            path,
+            SystemUtils
+                .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_RETENTION)
+                .orElse(Constants.DEFAULT_LOG_FILE_RETENTION),
+            SystemUtils
+                .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_SIZE)
+                .orElse(Constants.DEFAULT_LOG_FILE_SIZE),
+            shards,
+            getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILE_SHARD_KEY)
+                .map(ShardedFileAppender.ShardKey::of)
+                .orElse(ShardedFileAppender.ShardKey.LOGGER)
+        );
+        shardedFileAppender.configShards(shard -> {
+            configAsync(shard);
+            configFileBuffer(shard);
+        });
+        shardedFileAppender.start();
+        return shardedFileAppender;
+    }
+
+    /**
+     * 流水线只作用于单个日志文件,分片或未配置日志目录时不开启
+     */
+    private static Optional<PipelinedAppender.FormatMode> getPipelineMode() {
+        if (!getSysProperty(Constants.SYSTEM_PROPERTY_LOG_DIR).isPresent()
+            || SystemUtils.getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_SHARDS).orElse(0) > 1) {
+            return Optional.empty();
+        }
+        return getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILE_PIPELINE).map(PipelinedAppender.FormatMode::of);
+    }
+
+    private static PipelinedAppender buildPipelinedAppender(DefaultFileAppender fileAppender, PipelinedAppender.FormatMode mode) {
+        PipelinedAppender pipelinedAppender = new PipelinedAppender(
+            fileAppender,
+            mode,
+            SystemUtils
+                .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_PIPELINE_WORKERS)
+                .orElse(Constants.DEFAULT_PIPELINE_WORKERS),
+            SystemUtils
+                .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_PIPELINE_CAPACITY)
+                .orElse(Constants.DEFAULT_PIPELINE_CAPACITY)
+        );
+        SystemUtils
+            .getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_ASYNC_STOP_TIMEOUT)
+            .ifPresent(pipelinedAppender::setStopTimeoutMillis);
+        pipelinedAppender.start();
+        return pipelinedAppender;
+    }
+
+    private static void configFileBuffer(DefaultFileAppender appender) {
+        SystemUtils
+            .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_BUFFER_SIZE)
+            .ifPresent(appender::setWriteBufferSize);
+        SystemUtils
+            .getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_FILE_IMMEDIATE_FLUSH)
+            .ifPresent(appender::setImmediateFlush);
+        SystemUtils
+            .getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_FILE_FLUSH_INTERVAL)
+            .ifPresent(appender::setFlushIntervalMillis);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILE_FLUSH_LEVEL)
+            .map(level -> level.trim().toUpperCase())
+            .ifPresent(level -> appender.setFlushLevel("NONE".equals(level) ? null : Level.valueOf(level)));
+        SystemUtils
+            .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_FILE_MMAP_REGION_SIZE)
+            .ifPresent(appender::setMappedRegionSize);
+        SystemUtils
+            .getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_FILE_MMAP)
+            .ifPresent(appender::setMemoryMapped);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_FILE_ROLLOVER)
+            .map(RolloverGranularity::of)
+            .ifPresent(appender::setRolloverGranularity);
+    }
+
+    private static void configAsync(AsyncAppender<LogEvent> appender) {
+        SystemUtils
+            .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_ASYNC_QUEUE_SIZE)
+            .ifPresent(appender::setQueueCapacity);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_ASYNC_WAIT_STRATEGY)
+            .map(WaitStrategy::of)
+            .ifPresent(appender::setWaitStrategy);
+        SystemUtils
+            .getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_ASYNC_QUEUE_BYTES)
+            .ifPresent(appender::setMaxQueueBytes);
+        SystemUtils
+            .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_ASYNC_BATCH_SIZE)
+            .ifPresent(appender::setBatchSize);
+        SystemUtils
+            .getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_ASYNC_STOP_TIMEOUT)
+            .ifPresent(appender::setStopTimeoutMillis);
+        SystemUtils
+            .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_ASYNC_PRIORITY_QUEUE_SIZE)
+            .ifPresent(appender::setPriorityQueueCapacity);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_ASYNC_PRIORITY_LEVEL)
+            .map(level -> Level.valueOf(level.trim().toUpperCase()))
+            .ifPresent(appender::setPriorityLevel);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_ASYNC_OVERFLOW_POLICY)
+            .map(OverflowPolicy::of)
+            .ifPresent(appender::setOverflowPolicy);
+        SystemUtils
+            .getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_ASYNC_OVERFLOW_TIMEOUT)
+            .ifPresent(appender::setOverflowTimeoutMillis);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_ASYNC_DISCARD_LEVEL)
+            .map(level -> Level.valueOf(level.trim().toUpperCase()))
+            .ifPresent(appender::setDiscardThreshold);
+        getSysProperty(Constants.SYSTEM_PROPERTY_LOG_ASYNC_DISCARD_RATIO)
+            .map(ratio -> Double.parseDouble(ratio.trim()))
+            .ifPresent(appender::setDiscardFillRatio);
+        SystemUtils
+            .getSysPropertyLong(Constants.SYSTEM_PROPERTY_LOG_ASYNC_DISCARD_REPORT_INTERVAL)
+            .ifPresent(appender::setDiscardReportIntervalMillis);
+        if (isGarbageFree()) {
+            appender.setGarbageFree(
+                true,
+                SystemUtils
+                    .getSysPropertyInteger(Constants.SYSTEM_PROPERTY_LOG_GARBAGE_FREE_POOL_SIZE)
+                    .orElse(appender.getQueueCapacity())
+            );
+        }
     }
 
     private static Layout<LogEvent> buildLayout() {
@@ -91,19 +574,8 @@ public class LoggerFactory {
         Exception loadLayoutException = null;
         try {
             layoutClazz = Thread.currentThread().getContextClassLoader().loadClass(className);
-            if (Layout.class.isAssignableFrom(layoutClazz)) {
-                for (Type genericInterface : layoutClazz.getGenericInterfaces()) {
-                    if (genericInterface instanceof ParameterizedType && ((ParameterizedType) genericInterface)
-                        .getRawType()
-                        .equals(Layout.class)) {
-                        Type[] actualTypeArguments = ((ParameterizedType) genericInterface).getActualTypeArguments();
-                        for (Type actualTypeArgument : actualTypeArguments) {
-                            if (actualTypeArgument.getTypeName().equals(LogEvent.class.getTypeName())) {
-                                return (Layout<LogEvent>) layoutClazz.getConstructor().newInstance();
-                            }
-                        }
-                    }
-                }
+            if (Layout.class.isAssignableFrom(layoutClazz) && isLogEventLayout(layoutClazz)) {
+                return (Layout<LogEvent>) layoutClazz.getConstructor().newInstance();
             }
         } catch (Exception e) {
             loadLayoutException = e;
@@ -113,6 +585,27 @@ public class LoggerFactory {
               : new IllegalArgumentException("Invalid layout class: " + className);
     }
 
+    /**
+     * 沿继承链查找Layout&lt;LogEvent&gt;或AbstractLayout&lt;LogEvent&gt;的声明
+     */
+    private static boolean isLogEventLayout(Class<?> layoutClazz) {
+        for (Class<?> clazz = layoutClazz; clazz != null; clazz = clazz.getSuperclass()) {
+            List<Type> genericTypes = new ArrayList<>(Arrays.asList(clazz.getGenericInterfaces()));
+            genericTypes.add(clazz.getGenericSuperclass());
+            for (Type genericType : genericTypes) {
+                if (genericType instanceof ParameterizedType) {
+                    ParameterizedType parameterizedType = (ParameterizedType) genericType;
+                    Type rawType = parameterizedType.getRawType();
+                    if ((rawType.equals(Layout.class) || rawType.equals(AbstractLayout.class))
+                        && parameterizedType.getActualTypeArguments()[0].getTypeName().equals(LogEvent.class.getTypeName())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     private static Level getLevelConfig() {
         return Optional
             .ofNullable(System.getProperty(Constants.SYSTEM_PROPERTY_LOG_LEVEL))
@@ -121,6 +614,79 @@ public class LoggerFactory {
             .orElse(Level.INFO);
     }
 
+    private static Map<String, Level> getLevelPrefixConfig() {
+        String prefix = Constants.SYSTEM_PROPERTY_LOG_LEVEL + ".";
+        Map<String, Level> levels = new HashMap<>();
+        for (String propertyName : System.getProperties().stringPropertyNames()) {
+            if (propertyName.startsWith(prefix) && propertyName.length() > prefix.length()) {
+                levels.put(
+                    propertyName.substring(prefix.length()),
+                    Level.valueOf(System.getProperty(propertyName).toUpperCase())
+                );
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * 配置指定名称(前缀)的级别,所有以{@code name + "."}开头且未配置更精确级别的logger都会生效.
+     * <p>
+     * 配置变更时会重新计算所有logger缓存的生效级别,日志打印路径不加锁.
+     *
+     * @param name  logger名称或包名前缀,{@link #ROOT_LOGGER_NAME}代表root
+     * @param level 级别,为null时移除该配置(root不可移除)
+     */
+    public static synchronized void setLevel(String name, Level level) {
+        if (name == null || name.isEmpty() || ROOT_LOGGER_NAME.equals(name)) {
+            if (level != null) {
+                LEVEL = level;
+            }
+        } else if (level == null) {
+            LEVEL_MAP.remove(name);
+        } else {
+            LEVEL_MAP.put(name, level);
+        }
+        refreshLevels();
+    }
+
+    public static void setRootLevel(Level level) {
+        setLevel(ROOT_LOGGER_NAME, level);
+    }
+
+    /**
+     * @return 指定名称的logger按前缀继承后生效的级别
+     */
+    public static Level getEffectiveLevel(String name) {
+        String current = name;
+        while (current != null) {
+            Level level = LEVEL_MAP.get(current);
+            if (level != null) {
+                return level;
+            }
+            int lastDot = current.lastIndexOf('.');
+            current = lastDot > 0 ? current.substring(0, lastDot) : null;
+        }
+        return LEVEL;
+    }
+
+    private static void refreshLevels() {
+        for (Logger logger : LOGGER_MAP.values()) {
+            logger.updateEffectiveLevel(getEffectiveLevel(logger.getName()));
+        }
+    }
+
+    private static Logger newLogger(String name) {
+        Logger logger = new Logger(name, APPENDER_COMBINER, getEffectiveLevel(name));
+        logger.setDeferSuppliers(
+            SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_SUPPLIER_DEFERRED).orElse(false)
+        );
+        logger.setGarbageFree(isGarbageFree());
+        logger.setClock(CLOCK);
+        logger.setFilterChain(FILTER_CHAIN);
+        configThrottle(logger);
+        return logger;
+    }
+
     public static Logger logger(Class<?> clazz) {
         return logger(clazz.getCanonicalName());
     }
@@ -128,9 +694,13 @@ public class LoggerFactory {
     public static Logger logger(String name) {
         Logger logger = LOGGER_MAP.get(name);
         if (logger == null) {
-            logger = new Logger(name, APPENDER_COMBINER, LEVEL);
-            Logger preLogger = LOGGER_MAP.putIfAbsent(name, logger);
-            logger = preLogger != null ? preLogger : logger;
+            // 与级别变更互斥,避免新建的logger错过刷新
+            synchronized (LoggerFactory.class) {
+                logger = LOGGER_MAP.computeIfAbsent(
+                    name,
+                    LoggerFactory::newLogger
+                );
+            }
         }
         return logger;
     }
@@ -1,21 +1,44 @@
 package io.github.supervate.vlog.appender;
 
+import io.github.supervate.vlog.common.TextEncoder;
+import io.github.supervate.vlog.common.ThrowableUtils;
+import io.github.supervate.vlog.layout.Layout;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * appender 组合器
+ * <p>
+ * 默认同步地将事件分发给所有appender.
+ * 开启异步({@link #setAsync(boolean)})后只使用一个队列和一个消费线程,由消费线程分发给各appender,
+ * 此时子appender应关闭异步作为同步输出端;实现了{@link EncodedSink}的输出端按layout实例共享格式化/编码结果,
+ * 每个事件对每个layout只格式化一次,一批结束后通知各输出端写出.
  *
  * @author supervate
  * @since 2024/04/27
  * <p>
  * All rights Reserved.
  */
-public class AppenderCombiner<E> extends AbstractAppender<E> {
+public class AppenderCombiner<E> extends AsyncAppender<E> {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
 
     volatile private List<Appender<E>> appenderList = new ArrayList<>();
 
+    /**
+     * 单个事件在各layout下的编码结果,只在消费线程中使用;缓冲在事件间复用.
+     */
+    private final List<Layout<E>> encodedLayouts = new ArrayList<>();
+    private final List<ByteBuffer> encodedBuffers = new ArrayList<>();
+    private final TextEncoder textEncoder = new TextEncoder();
+    private StringBuilder formatBuffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+
     public AppenderCombiner() {
+        setAsync(false);
     }
 
     public void addAppender(Appender<E> appender) {
@@ -26,14 +49,29 @@ public class AppenderCombiner<E> extends AbstractAppender<E> {
         }
     }
 
+    /**
+     * @return 当前的appender列表(只读快照)
+     */
+    public List<Appender<E>> getAppenders() {
+        return Collections.unmodifiableList(appenderList);
+    }
+
     @Override
     public boolean support(E event) {
         return true;
     }
 
+    /**
+     * 同步分发时由各appender自行保证线程安全,不加锁
+     */
+    @Override
+    void appendSynchronously(E event) {
+        doAppend(event);
+    }
+
     @Override
-    public void append(E event) {
-        if (started()) {
+    void doAppend(E event) {
+        if (!isClosed()) {
             for (Appender<E> appender : appenderList) {
                 if (appender.support(event)) {
                     appender.append(event);
@@ -42,4 +80,93 @@ public class AppenderCombiner<E> extends AbstractAppender<E> {
         }
     }
 
+    @Override
+    void doAppend(List<E> events) {
+        if (isClosed()) {
+            return;
+        }
+        List<Appender<E>> appenders = appenderList;
+        for (E event : events) {
+            for (Appender<E> appender : appenders) {
+                try {
+                    if (!appender.support(event)) {
+                        continue;
+                    }
+                    if (isSynchronousSink(appender)) {
+                        @SuppressWarnings("unchecked")
+                        EncodedSink<E> sink = (EncodedSink<E>) appender;
+                        ByteBuffer encoded = encode(sink.getLayout(), event);
+                        // 每个输出端从头读取
+                        encoded.position(0);
+                        sink.writeEncoded(event, encoded);
+                    } else {
+                        appender.append(event);
+                    }
+                } catch (Exception e) {
+                    System.err.println(ThrowableUtils.throwableToStr(e));
+                }
+            }
+            encodedLayouts.clear();
+        }
+        for (Appender<E> appender : appenders) {
+            if (isSynchronousSink(appender)) {
+                try {
+                    ((EncodedSink<?>) appender).endOfBatch();
+                } catch (Exception e) {
+                    System.err.println(ThrowableUtils.throwableToStr(e));
+                }
+            }
+        }
+    }
+
+    @Override
+    void flushNow() {
+        for (Appender<E> appender : appenderList) {
+            if (isSynchronousSink(appender)) {
+                try {
+                    ((EncodedSink<?>) appender).flush();
+                } catch (Exception e) {
+                    System.err.println(ThrowableUtils.throwableToStr(e));
+                }
+            }
+        }
+    }
+
+    private static boolean isSynchronousSink(Appender<?> appender) {
+        return appender instanceof EncodedSink
+            && !(appender instanceof AsyncAppender && ((AsyncAppender<?>) appender).isAsync());
+    }
+
+    /**
+     * 按layout实例复用当前事件的编码结果
+     */
+    private ByteBuffer encode(Layout<E> layout, E event) {
+        int count = encodedLayouts.size();
+        for (int i = 0; i < count; i++) {
+            if (encodedLayouts.get(i) == layout) {
+                return encodedBuffers.get(i);
+            }
+        }
+        if (formatBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            formatBuffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+        }
+        formatBuffer.setLength(0);
+        layout.encode(event, formatBuffer);
+        int length = textEncoder.encodedLength(formatBuffer);
+        ByteBuffer buffer = count < encodedBuffers.size() ? encodedBuffers.get(count) : null;
+        if (buffer == null || buffer.capacity() < length || buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            buffer = ByteBuffer.allocate(Math.max(length, INITIAL_BUFFER_SIZE));
+            if (count < encodedBuffers.size()) {
+                encodedBuffers.set(count, buffer);
+            } else {
+                encodedBuffers.add(buffer);
+            }
+        }
+        buffer.clear();
+        textEncoder.encode(formatBuffer, buffer);
+        buffer.flip();
+        encodedLayouts.add(layout);
+        return buffer;
+    }
+
 }
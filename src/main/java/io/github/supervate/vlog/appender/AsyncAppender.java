@@ -1,15 +1,43 @@
 package io.github.supervate.vlog.appender;
 
 
+import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.RingBufferQueue;
 import io.github.supervate.vlog.common.ThrowableUtils;
+import io.github.supervate.vlog.common.WaitStrategy;
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.event.MutableLogEvent;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 异步appender
  * <p>
- * 注意: doAppend是单独开启一个线程,串行处理所有的event.
+ * 注意: doAppend是单独开启一个(守护)线程,串行处理所有的event.
+ * stop后不再接收事件(计为丢弃),消费线程在限定时间内输出队列中剩余的事件后退出.
+ * 消费线程每次取出队列中所有可用的事件(不超过batchSize)作为一批交给{@link #doAppend(List)},
+ * 子类可覆盖它将一批事件合并为一次写入.
+ * <p>
+ * 队列为预分配的无锁有界环形队列({@link RingBufferQueue}),容量可按事件数以及估算的字节数限制,
+ * 队列满时按{@link OverflowPolicy}处理;被丢弃的事件按级别计数,并由消费线程定期输出一行汇总.
+ * <p>
+ * 收到生产线程复用的{@link MutableLogEvent}时会先复制: 无垃圾模式下复制进预分配的事件槽,
+ * 事件槽在doAppend完成后回收;否则复制为不可变事件.
+ * <p>
+ * 关闭异步({@link #setAsync(boolean)})后作为同步输出端使用,通常挂在异步的{@link AppenderCombiner}下.
+ * <p>
+ * 开启优先通道({@link #setPriorityLevel(Level)})后,不低于该级别的事件进入单独的小队列,不受普通队列积压影响:
+ * 消费线程在每批普通事件之前先输出优先队列中的事件,并立即写出输出端的缓冲;优先队列满时事件按普通事件入队.
+ * 顺序保证: 每个通道内保持入队顺序,因此同一线程(同一logger)的优先事件之间、普通事件之间各自有序;
+ * 跨通道不保证顺序,优先事件可能先于同一线程更早记录的普通事件输出,需要时按事件时间戳还原.
  *
  * @author supervate
  * @since 2024/04/27
@@ -18,34 +46,743 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public abstract class AsyncAppender<E> extends AbstractAppender<E> {
 
-    private final BlockingQueue<E> queue;
+    private static final int BACK_OFF_YIELD_TIMES = 100;
+    private static final long BACK_OFF_PARK_NANOS = 50_000;
+    private static final Level[] LEVELS = Level.values();
+    private static final long STOP_JOIN_GRACE_MILLIS = 1000;
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    /**
+     * 估算事件字节数时,事件自身及每个参数的固定开销
+     */
+    private static final int EVENT_OVERHEAD_BYTES = 64;
+    private static final int ARGUMENT_OVERHEAD_BYTES = 16;
+
+    /**
+     * 随配置重建,同步模式下为null.
+     */
+    private RingBufferQueue<E> queue;
+    /**
+     * 无垃圾模式下空闲的事件槽,为null则未开启.
+     */
+    private RingBufferQueue<MutableLogEvent> freeSlots;
+    /**
+     * 优先通道的队列,未开启或同步模式下为null.
+     */
+    private RingBufferQueue<E> priorityQueue;
+    /**
+     * 不低于该级别的事件走优先通道,为null则未开启
+     */
+    private Level priorityLevel;
+    private int priorityQueueCapacity = Constants.DEFAULT_ASYNC_PRIORITY_QUEUE_SIZE;
+    private int queueCapacity = Constants.DEFAULT_ASYNC_QUEUE_SIZE;
+    private WaitStrategy waitStrategy = WaitStrategy.BLOCKING;
+    private boolean garbageFree;
+    private boolean async = true;
+    private int batchSize = Constants.DEFAULT_ASYNC_BATCH_SIZE;
+    private long stopTimeoutMillis = Constants.DEFAULT_ASYNC_STOP_TIMEOUT;
+    private volatile boolean stopped;
+    /**
+     * 未启动,或已停止且剩余事件已输出(或超时)
+     */
+    private volatile boolean closed = true;
+    private volatile long stopDeadline;
+    private volatile Thread consumer;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    private long overflowTimeoutMillis = Constants.DEFAULT_ASYNC_OVERFLOW_TIMEOUT;
+    /**
+     * DISCARD_BELOW_LEVEL策略下,低于该级别的事件可被丢弃
+     */
+    private Level discardThreshold = Level.WARN;
+    /**
+     * DISCARD_BELOW_LEVEL策略下,队列使用率达到该比例后开始丢弃
+     */
+    private double discardFillRatio = Constants.DEFAULT_ASYNC_DISCARD_FILL_RATIO;
+    /**
+     * 队列中事件估算字节数上限,<=0则不限制
+     */
+    private long maxQueueBytes;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private long discardReportIntervalMillis = Constants.DEFAULT_ASYNC_DISCARD_REPORT_INTERVAL;
+
+    /**
+     * 按级别统计的丢弃数,最后一个位置统计非LogEvent事件
+     */
+    private final LongAdder[] droppedCounters = new LongAdder[LEVELS.length + 1];
+    private final long[] reportedDropped = new long[LEVELS.length + 1];
+    private long lastReportTime;
 
     public AsyncAppender() {
-        this.queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < droppedCounters.length; i++) {
+            droppedCounters[i] = new LongAdder();
+        }
+        resetQueue();
+    }
+
+    /**
+     * 设置队列容量(会向上取整为2的幂),需在start之前调用.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        checkNotStarted();
+        this.queueCapacity = Math.max(queueCapacity, 1);
+        resetQueue();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * 设置消费线程的等待策略,需在start之前调用.
+     */
+    public void setWaitStrategy(WaitStrategy waitStrategy) {
+        checkNotStarted();
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+        resetQueue();
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * 设置消费线程每批最多处理的事件数,需在start之前调用.
+     */
+    public void setBatchSize(int batchSize) {
+        checkNotStarted();
+        this.batchSize = Math.max(batchSize, 1);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getStopTimeoutMillis() {
+        return stopTimeoutMillis;
+    }
+
+    /**
+     * @param stopTimeoutMillis stop时等待剩余事件输出的最长时间
+     */
+    public void setStopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = Math.max(stopTimeoutMillis, 0);
+    }
+
+    /**
+     * 开启/关闭无垃圾模式,事件槽数量与队列容量一致,需在start之前调用.
+     *
+     * @see #setGarbageFree(boolean, int)
+     */
+    public void setGarbageFree(boolean garbageFree) {
+        checkNotStarted();
+        this.garbageFree = garbageFree;
+        resetQueue();
+    }
+
+    /**
+     * 开启后事件复制进预分配的事件槽,事件槽耗尽即队列已满,按溢出策略处理.
+     *
+     * @param garbageFree 是否开启
+     * @param poolSize    事件槽数量,同时作为队列容量
+     */
+    public void setGarbageFree(boolean garbageFree, int poolSize) {
+        checkNotStarted();
+        this.queueCapacity = Math.max(poolSize, 1);
+        this.garbageFree = garbageFree;
+        resetQueue();
+    }
+
+    public boolean isGarbageFree() {
+        return garbageFree;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * 设置是否异步,需在start之前调用.
+     * <p>
+     * 关闭后不再创建队列与消费线程,append在调用线程中直接执行doAppend(对同一appender串行),
+     * 用于作为{@link AppenderCombiner}异步分发下的同步输出端.
+     */
+    public void setAsync(boolean async) {
+        checkNotStarted();
+        this.async = async;
+        resetQueue();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+    }
+
+    public long getOverflowTimeoutMillis() {
+        return overflowTimeoutMillis;
+    }
+
+    /**
+     * @param overflowTimeoutMillis BLOCK_TIMEOUT策略的最长阻塞时间
+     */
+    public void setOverflowTimeoutMillis(long overflowTimeoutMillis) {
+        this.overflowTimeoutMillis = Math.max(overflowTimeoutMillis, 0);
+    }
+
+    public Level getDiscardThreshold() {
+        return discardThreshold;
+    }
+
+    /**
+     * @param discardThreshold DISCARD_BELOW_LEVEL策略下,低于该级别的事件可被丢弃
+     */
+    public void setDiscardThreshold(Level discardThreshold) {
+        this.discardThreshold = Objects.requireNonNull(discardThreshold);
+    }
+
+    public double getDiscardFillRatio() {
+        return discardFillRatio;
+    }
+
+    /**
+     * @param discardFillRatio DISCARD_BELOW_LEVEL策略下,队列使用率(0~1)达到该比例后开始丢弃
+     */
+    public void setDiscardFillRatio(double discardFillRatio) {
+        this.discardFillRatio = Math.min(Math.max(discardFillRatio, 0), 1);
+    }
+
+    public long getMaxQueueBytes() {
+        return maxQueueBytes;
+    }
+
+    /**
+     * 按估算的字节数(消息长度、参数个数)限制队列,<=0则只按事件数限制.需在start之前调用.
+     */
+    public void setMaxQueueBytes(long maxQueueBytes) {
+        checkNotStarted();
+        this.maxQueueBytes = Math.max(maxQueueBytes, 0);
+    }
+
+    public Level getPriorityLevel() {
+        return priorityLevel;
+    }
+
+    /**
+     * 开启优先通道,需在start之前调用.
+     *
+     * @param priorityLevel 不低于该级别的事件走优先通道,为null则关闭
+     */
+    public void setPriorityLevel(Level priorityLevel) {
+        checkNotStarted();
+        this.priorityLevel = priorityLevel;
+        resetQueue();
+    }
+
+    public int getPriorityQueueCapacity() {
+        return priorityQueueCapacity;
+    }
+
+    /**
+     * 设置优先队列容量(会向上取整为2的幂),需在start之前调用.
+     */
+    public void setPriorityQueueCapacity(int priorityQueueCapacity) {
+        checkNotStarted();
+        this.priorityQueueCapacity = Math.max(priorityQueueCapacity, 1);
+        resetQueue();
+    }
+
+    public long getDiscardReportIntervalMillis() {
+        return discardReportIntervalMillis;
+    }
+
+    /**
+     * @param discardReportIntervalMillis 输出丢弃汇总的间隔,<=0则不输出
+     */
+    public void setDiscardReportIntervalMillis(long discardReportIntervalMillis) {
+        this.discardReportIntervalMillis = discardReportIntervalMillis;
+    }
+
+    /**
+     * @return 累计丢弃的事件数
+     */
+    public long getDroppedEventCount() {
+        long count = 0;
+        for (LongAdder droppedCounter : droppedCounters) {
+            count += droppedCounter.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return 指定级别累计丢弃的事件数
+     */
+    public long getDroppedEventCount(Level level) {
+        return droppedCounters[level.ordinal()].sum();
+    }
+
+    private void checkNotStarted() {
+        if (started()) {
+            throw new IllegalStateException("async appender must be configured before start.");
+        }
+    }
+
+    private void resetQueue() {
+        if (!async) {
+            this.queue = null;
+            this.freeSlots = null;
+            this.priorityQueue = null;
+            return;
+        }
+        // 消费线程不在优先队列上等待,由普通队列的唤醒通知
+        this.priorityQueue = priorityLevel != null ? new RingBufferQueue<>(priorityQueueCapacity) : null;
+        RingBufferQueue<E> newQueue = new RingBufferQueue<>(queueCapacity, waitStrategy);
+        if (garbageFree) {
+            int size = newQueue.capacity();
+            // 空闲槽由多个生产者并发获取,由消费线程归还,不需要阻塞等待
+            RingBufferQueue<MutableLogEvent> slots = new RingBufferQueue<>(size, WaitStrategy.SLEEPING);
+            for (int i = 0; i < size; i++) {
+                slots.offer(new MutableLogEvent(Constants.DEFAULT_REUSABLE_EVENT_ARGUMENT_SIZE));
+            }
+            this.freeSlots = slots;
+        } else {
+            this.freeSlots = null;
+        }
+        this.queue = newQueue;
     }
 
     @Override
-    public boolean start() {
-        new Thread(() -> {
-            while (true) {
-                try {
-                    if (started()) {
-                        E event = queue.take();
-                        doAppend(event);
-                    }
-                } catch (Exception e) {
-                    System.err.println(ThrowableUtils.throwableToStr(e));
+    public synchronized boolean start() {
+        if (started()) {
+            return true;
+        }
+        stopped = false;
+        closed = false;
+        if (!async) {
+            return super.start();
+        }
+        lastReportTime = System.currentTimeMillis();
+        super.start();
+        Thread thread = new Thread(this::consume, consumerThreadName());
+        thread.setDaemon(true);
+        consumer = thread;
+        thread.start();
+        return true;
+    }
+
+    /**
+     * 停止接收事件,并在stopTimeoutMillis内将队列中剩余的事件输出完毕,消费线程随后退出.
+     */
+    @Override
+    public boolean stop() {
+        Thread thread;
+        synchronized (this) {
+            if (stopped) {
+                return true;
+            }
+            stopped = true;
+            if (!async) {
+                closed = true;
+                return super.stop();
+            }
+            stopDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeoutMillis);
+            thread = consumer;
+            consumer = null;
+            super.stop();
+        }
+        if (thread != null) {
+            queue.wakeUpConsumer();
+            try {
+                // 额外等待消费线程处理完最后一批
+                thread.join(stopTimeoutMillis + STOP_JOIN_GRACE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closed = true;
+            int remaining = queue.size() + (priorityQueue == null ? 0 : priorityQueue.size());
+            if (thread.isAlive() || remaining > 0) {
+                System.err.printf(
+                    "[%s] stop timeout after %d ms, %d queued events not written.%n",
+                    getClass().getSimpleName(),
+                    stopTimeoutMillis,
+                    remaining
+                );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 输出端据此拒绝写出,而不是{@link #started()}: stop时started先被清除,消费线程随后仍需输出剩余事件.
+     *
+     * @return 未启动,或已停止且剩余事件已输出(或超时)
+     */
+    protected boolean isClosed() {
+        return closed;
+    }
+
+    private String consumerThreadName() {
+        String name = getClass().getSimpleName();
+        return "vlog-async-" + (name.isEmpty() ? "appender" : name) + "-" + THREAD_INDEX.incrementAndGet();
+    }
+
+    /**
+     * 消费线程: 运行时在队列上按等待策略等待,停止后在截止时间内排空队列后退出.
+     * 每批普通事件之前先排空优先队列.
+     */
+    private void consume() {
+        List<E> batch = new ArrayList<>(batchSize);
+        while (started()) {
+            try {
+                appendPriority(batch);
+                E event = queue.poll(pollTimeoutMillis(), TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    appendBatch(batch, event);
                 }
+                reportDiscardedIfDue(false);
+            } catch (Exception e) {
+                System.err.println(ThrowableUtils.throwableToStr(e));
+            }
+        }
+        while (System.nanoTime() - stopDeadline < 0) {
+            try {
+                appendPriority(batch);
+                E event = queue.poll();
+                if (event == null) {
+                    break;
+                }
+                appendBatch(batch, event);
+            } catch (Exception e) {
+                System.err.println(ThrowableUtils.throwableToStr(e));
+            }
+        }
+        reportDiscardedIfDue(true);
+    }
+
+    /**
+     * 输出优先队列中的所有事件,每批之后立即写出输出端的缓冲
+     */
+    private void appendPriority(List<E> batch) {
+        RingBufferQueue<E> lane = priorityQueue;
+        if (lane == null) {
+            return;
+        }
+        while (lane.drainTo(batch, batchSize) > 0) {
+            try {
+                doAppend(batch);
+                flushNow();
+            } finally {
+                batch.clear();
             }
-        }).start();
-        return super.start();
+        }
+    }
+
+    private void appendBatch(List<E> batch, E first) {
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        for (E e : batch) {
+            dequeued(e);
+        }
+        try {
+            doAppend(batch);
+        } finally {
+            for (E e : batch) {
+                recycle(e);
+            }
+            batch.clear();
+        }
+    }
+
+    private long pollTimeoutMillis() {
+        return discardReportIntervalMillis > 0 ? discardReportIntervalMillis : Long.MAX_VALUE;
     }
 
     @Override
     final public void append(E event) {
-        queue.offer(event);
+        if (stopped) {
+            countDropped(event);
+            return;
+        }
+        if (!async) {
+            appendSynchronously(event);
+            return;
+        }
+        if (priorityQueue != null && isPriority(event) && offerPriority(event)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DISCARD_BELOW_LEVEL && isDiscardable(event) && reachedDiscardFillRatio()) {
+            countDropped(event);
+            return;
+        }
+        E queuedEvent = toQueuedEvent(event);
+        if (queuedEvent == null) {
+            countDropped(event);
+            return;
+        }
+        if (!enqueue(queuedEvent)) {
+            countDropped(queuedEvent);
+            recycle(queuedEvent);
+        }
+    }
+
+    private boolean isPriority(E event) {
+        return event instanceof LogEvent && ((LogEvent) event).getLevel().compareTo(priorityLevel) >= 0;
+    }
+
+    /**
+     * 复用的事件复制为不可变事件(不占用事件槽,避免事件槽耗尽时等待普通队列的消费),入队后唤醒消费线程.
+     *
+     * @return 是否入队,优先队列满时返回false
+     */
+    @SuppressWarnings("unchecked")
+    private boolean offerPriority(E event) {
+        E queuedEvent = event instanceof MutableLogEvent ? (E) ((MutableLogEvent) event).toImmutable() : event;
+        if (!priorityQueue.offer(queuedEvent)) {
+            return false;
+        }
+        queue.wakeUpConsumer();
+        return true;
+    }
+
+    /**
+     * 生产线程复用的事件需复制后才能入队
+     *
+     * @return 待入队的事件,没有可用的事件槽且按溢出策略丢弃时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private E toQueuedEvent(E event) {
+        if (event instanceof MutableLogEvent) {
+            MutableLogEvent reusableEvent = (MutableLogEvent) event;
+            if (freeSlots == null) {
+                return (E) reusableEvent.toImmutable();
+            }
+            MutableLogEvent slot = takeFreeSlot();
+            if (slot == null) {
+                return null;
+            }
+            slot.copyFrom(reusableEvent);
+            return (E) slot;
+        }
+        return event;
+    }
+
+    /**
+     * @return 是否入队成功,失败则事件被丢弃
+     */
+    private boolean enqueue(E event) {
+        switch (overflowPolicy) {
+            case DROP_NEW:
+                return offer(event);
+            case DROP_OLDEST:
+                while (!offer(event)) {
+                    E oldest = queue.poll();
+                    if (oldest != null) {
+                        dequeued(oldest);
+                        countDropped(oldest);
+                        recycle(oldest);
+                    }
+                }
+                return true;
+            case BLOCK_TIMEOUT:
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(overflowTimeoutMillis);
+                for (int counter = 0; !offer(event); counter++) {
+                    if (System.nanoTime() - deadline >= 0 || stopped || Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                    backOff(counter);
+                }
+                return true;
+            default:
+                if (maxQueueBytes <= 0) {
+                    // 只按事件数限制时交由队列的等待策略处理
+                    try {
+                        queue.put(event);
+                        return true;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                for (int counter = 0; !offer(event); counter++) {
+                    if (stopped || Thread.currentThread().isInterrupted()) {
+                        return false;
+                    }
+                    backOff(counter);
+                }
+                return true;
+        }
+    }
+
+    /**
+     * 在事件数与估算字节数限制内入队,队列为空时总是允许超大的单个事件入队.
+     */
+    private boolean offer(E event) {
+        if (maxQueueBytes <= 0) {
+            return queue.offer(event);
+        }
+        long size = estimateSize(event);
+        long current = queuedBytes.get();
+        if (current > 0 && current + size > maxQueueBytes) {
+            return false;
+        }
+        if (queue.offer(event)) {
+            queuedBytes.addAndGet(size);
+            return true;
+        }
+        return false;
+    }
+
+    private void dequeued(E event) {
+        if (maxQueueBytes > 0) {
+            queuedBytes.addAndGet(-estimateSize(event));
+        }
+    }
+
+    private boolean isDiscardable(E event) {
+        return event instanceof LogEvent && ((LogEvent) event).getLevel().compareTo(discardThreshold) < 0;
+    }
+
+    private boolean reachedDiscardFillRatio() {
+        if (queue.size() >= queueCapacity * discardFillRatio) {
+            return true;
+        }
+        return maxQueueBytes > 0 && queuedBytes.get() >= maxQueueBytes * discardFillRatio;
+    }
+
+    private void countDropped(E event) {
+        int index = event instanceof LogEvent ? ((LogEvent) event).getLevel().ordinal() : LEVELS.length;
+        droppedCounters[index].increment();
+    }
+
+    /**
+     * 估算事件占用的字节数,仅在限制队列字节数时使用
+     */
+    protected long estimateSize(E event) {
+        if (event instanceof LogEvent) {
+            LogEvent logEvent = (LogEvent) event;
+            String message = logEvent.getMessage();
+            return EVENT_OVERHEAD_BYTES
+                + (message == null ? 0 : message.length() * 2L)
+                + (long) logEvent.getArgumentCount() * ARGUMENT_OVERHEAD_BYTES;
+        }
+        return EVENT_OVERHEAD_BYTES;
+    }
+
+    private void reportDiscardedIfDue(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && (discardReportIntervalMillis <= 0 || now - lastReportTime < discardReportIntervalMillis)) {
+            return;
+        }
+        lastReportTime = now;
+        long total = 0;
+        StringBuilder levels = new StringBuilder();
+        for (int i = 0; i < droppedCounters.length; i++) {
+            long dropped = droppedCounters[i].sum();
+            long delta = dropped - reportedDropped[i];
+            reportedDropped[i] = dropped;
+            total += delta;
+            if (delta > 0) {
+                levels.append(levels.length() == 0 ? "" : ", ")
+                    .append(i < LEVELS.length ? LEVELS[i].name() : "OTHER")
+                    .append('=')
+                    .append(delta);
+            }
+        }
+        if (total > 0) {
+            reportDiscarded(String.format(
+                "[%s] queue overflow(%s), discarded %d events in last %d ms (%s), total discarded: %d.",
+                getClass().getSimpleName(),
+                overflowPolicy,
+                total,
+                discardReportIntervalMillis,
+                levels,
+                getDroppedEventCount()
+            ));
+        }
+    }
+
+    /**
+     * 输出丢弃汇总,默认输出到标准错误流,子类可写入自身的输出目标.在消费线程中调用.
+     */
+    protected void reportDiscarded(String summary) {
+        System.err.println(summary);
+    }
+
+    /**
+     * 事件槽与队列容量相同,槽耗尽即队列已满,按溢出策略处理.
+     * 需要等待时自旋/让出/短暂park等待消费线程回收,不使用条件队列阻塞(会为每次等待分配节点);
+     * 停止后不再有消费线程回收事件槽,不再等待.
+     *
+     * @return 事件槽,按溢出策略丢弃当前事件时返回null
+     */
+    private MutableLogEvent takeFreeSlot() {
+        MutableLogEvent slot = freeSlots.poll();
+        if (slot != null || overflowPolicy == OverflowPolicy.DROP_NEW) {
+            return slot;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(overflowTimeoutMillis);
+        for (int counter = 0; (slot = freeSlots.poll()) == null; counter++) {
+            if (stopped || Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                // 丢弃最旧的事件,归还其事件槽
+                E oldest = queue.poll();
+                if (oldest != null) {
+                    dequeued(oldest);
+                    countDropped(oldest);
+                    recycle(oldest);
+                    continue;
+                }
+            } else if (overflowPolicy == OverflowPolicy.BLOCK_TIMEOUT && System.nanoTime() - deadline >= 0) {
+                return null;
+            }
+            backOff(counter);
+        }
+        return slot;
+    }
+
+    private static void backOff(int counter) {
+        if (counter < BACK_OFF_YIELD_TIMES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(BACK_OFF_PARK_NANOS);
+        }
+    }
+
+    private void recycle(E event) {
+        if (freeSlots != null && event instanceof MutableLogEvent) {
+            MutableLogEvent slot = (MutableLogEvent) event;
+            slot.clear();
+            freeSlots.offer(slot);
+        }
+    }
+
+    /**
+     * 同步模式下在调用线程中输出,默认对同一appender加锁串行.
+     */
+    void appendSynchronously(E event) {
+        synchronized (this) {
+            doAppend(event);
+        }
     }
 
     abstract void doAppend(E event);
 
+    /**
+     * 立即写出缓冲的内容,不受写出策略限制.在消费线程中输出优先事件后调用,默认无缓冲.
+     */
+    void flushNow() {
+    }
+
+    /**
+     * 处理一批事件,默认逐个调用{@link #doAppend(Object)}.在消费线程中调用,列表在返回后被复用.
+     */
+    void doAppend(List<E> events) {
+        for (E event : events) {
+            doAppend(event);
+        }
+    }
+
 }
@@ -1,41 +1,52 @@
 package io.github.supervate.vlog.appender;
 
 import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.FileUtils;
+import io.github.supervate.vlog.common.TextEncoder;
 import io.github.supervate.vlog.common.ThrowableUtils;
 import io.github.supervate.vlog.common.Tuple2;
 import io.github.supervate.vlog.exception.CreateAppenderException;
+import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.event.LogEvent;
 import io.github.supervate.vlog.layout.Layout;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.spi.AbstractInterruptibleChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /**
  * 默认日志输出-文件
  * <p>
- * 支持自动清理/日志文件按天滚动记录.
+ * 支持自动清理/日志文件按天(或小时、分钟,见{@link RolloverGranularity})及大小滚动记录.
+ * 滚动状态(已写入字节数、下一次滚动时间、下一个文件序号)保存在内存中,只在启动和进入新周期时扫描目录.
+ * 事件由{@link TextEncoder}直接编码进一个较大的写缓冲后统一写出,减少内存复制与write系统调用,
+ * 写出时机见{@link #setImmediateFlush(boolean)}/{@link #setFlushIntervalMillis(long)}/{@link #setFlushLevel(Level)}.
  *
  * @author supervate
  * @since 2024/04/27
@@ -43,16 +54,26 @@ import java.util.concurrent.locks.ReentrantLock;
  * All rights Reserved.
  */
 @SuppressWarnings({ "ResultOfMethodCallIgnored", "resource", "UnusedReturnValue" })
-public class DefaultFileAppender extends AsyncAppender<LogEvent> {
+public class DefaultFileAppender extends AsyncAppender<LogEvent> implements EncodedSink<LogEvent> {
 
     public static final int MIN_FILE_SIZE = 10 * 1024 * 1024;
-    private static final int WRITE_BUFFER_SIZE = 1024;
+    public static final int MIN_WRITE_BUFFER_SIZE = 4 * 1024;
+    public static final int MIN_MAPPED_REGION_SIZE = 64 * 1024;
+    private static final int CONTENT_SCAN_BUFFER_SIZE = 8 * 1024;
+    private static final int FORMAT_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_FORMAT_BUFFER_SIZE = 64 * 1024;
+    private static final long CLEANER_STOP_TIMEOUT_MILLIS = 1000;
+    private static final AtomicInteger CLEANER_THREAD_INDEX = new AtomicInteger();
 
     private final Layout<LogEvent> layout;
     private final Path directory;
+    /**
+     * 追加在周期前缀之后的文件名后缀,如分片的"-shard3",默认为空
+     */
+    private final String fileSuffix;
     private final AtomicReference<Tuple2<Path, FileChannel>> logFile;
     private final Lock fileOptionLock;
-    private final ScheduledExecutorService scheduledExecutorService;
+    private ScheduledExecutorService scheduledExecutorService;
     /**
      * 默认最长保留七天
      * 注意: 如果可配置,本值最少要保留一天(当天日志不删除).
@@ -64,7 +85,52 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
     @SuppressWarnings("FieldMayBeFinal")
     private int logFileSizeBytes;
 
-    ThreadLocal<ByteBuffer> logWriteBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE));
+    /**
+     * 编码后事件的写缓冲,访问时持有当前对象锁.
+     * 缓冲满、缓冲时间超过flushIntervalMillis、遇到不低于flushLevel的事件,或(immediateFlush时)每批结束时写出.
+     */
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(Constants.DEFAULT_LOG_FILE_BUFFER_SIZE);
+    private final TextEncoder textEncoder = new TextEncoder();
+    /**
+     * 复用的格式化缓冲,在锁内使用
+     */
+    private StringBuilder formatBuffer = new StringBuilder(FORMAT_BUFFER_SIZE);
+    /**
+     * 写缓冲中最早的数据的写入时间
+     */
+    private long bufferedSinceNanos;
+    private boolean immediateFlush = true;
+    private long flushIntervalMillis = Constants.DEFAULT_LOG_FILE_FLUSH_INTERVAL;
+    private Level flushLevel = Level.ERROR;
+    private ScheduledFuture<?> flushTask;
+
+    /**
+     * 内存映射模式: 事件直接复制进映射窗口,窗口写满后映射文件的下一段,滚动/关闭时将文件截断为实际长度.
+     */
+    private boolean memoryMapped;
+    private int mappedRegionSize = Constants.DEFAULT_LOG_FILE_MAPPED_REGION_SIZE;
+    /**
+     * 当前文件的映射窗口,访问时持有当前对象锁.
+     */
+    private MappedByteBuffer mappedRegion;
+
+    /**
+     * 滚动状态,访问时持有当前对象锁: 常规路径只需比较当前时间与下一次滚动时间、已写入字节数与文件大小上限.
+     */
+    private RolloverGranularity rolloverGranularity = RolloverGranularity.DAY;
+    /**
+     * 当前文件已写入(含写缓冲中)的字节数
+     */
+    private long fileBytes;
+    /**
+     * 当前周期结束(需按时间滚动)的时间戳
+     */
+    private long nextRolloverMillis;
+    /**
+     * 当前周期的文件名前缀及下一次按大小滚动使用的序号
+     */
+    private String filePrefix;
+    private int nextFileIndex;
 
     public DefaultFileAppender(Layout<LogEvent> layout, Path directory) {
         this(layout, directory, Constants.DEFAULT_LOG_FILE_RETENTION, Constants.DEFAULT_LOG_FILE_SIZE);
@@ -75,6 +141,19 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
     }
 
     public DefaultFileAppender(Layout<LogEvent> layout, Path directory, int logFileRetentionDays, int logFileSizeBytes) {
+        this(layout, directory, logFileRetentionDays, logFileSizeBytes, "");
+    }
+
+    /**
+     * @param fileSuffix 文件名后缀,文件名为"周期前缀+后缀"及按大小滚动的"周期前缀+后缀-n",如: 2024-04-27-shard3-1
+     */
+    public DefaultFileAppender(
+        Layout<LogEvent> layout,
+        Path directory,
+        int logFileRetentionDays,
+        int logFileSizeBytes,
+        String fileSuffix
+    ) {
         if (Objects.isNull(directory) || (Files.exists(directory) && !Files.isDirectory(directory))) {
             throw new CreateAppenderException("log directory missing, it will not record any log event");
         }
@@ -87,9 +166,10 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
         }
         this.layout = layout;
         this.directory = directory;
+        this.fileSuffix = fileSuffix == null ? "" : fileSuffix;
         this.logFile = new AtomicReference<>();
         this.fileOptionLock = new ReentrantLock();
-        this.scheduledExecutorService = Executors.newScheduledThreadPool(1);
+        this.scheduledExecutorService = newCleanerExecutor();
         // <=0则不删除文件
         this.logFileRetentionDays = Math.max(logFileRetentionDays, 0);
         // 最小10m,<=0则不限制.
@@ -99,51 +179,229 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
 
     private void init() {
         try {
-            LocalDateTime now = LocalDateTime.now();
-            Tuple2<Path, FileChannel> initLogFile = openLogFile(dateToLogFileName(now), computeFileIndex(now, false));
-            logFile.set(initLogFile);
+            long now = System.currentTimeMillis();
+            String prefix = rolloverGranularity.format(toLocalDateTime(now));
+            // 继续写入当前周期最新的文件
+            int fileIndex = Math.max(computeFileIndex(prefix), 0);
+            logFile.set(openLogFile(prefix, fileIndex, now));
         } catch (IOException e){
             throw new CreateAppenderException(e);
         }
     }
 
-    private int computeFileIndex(LocalDateTime date, boolean increment) throws IOException {
-        String todayFileNamePrefix = dateToLogFileName(date);
-        return Files
-            .list(directory)
-            .map(path -> {
-                String fileName = path.getFileName().toString();
-                int prefixIndex = fileName.lastIndexOf(todayFileNamePrefix);
-                if (prefixIndex != -1) {
-                    if (fileName.length() == todayFileNamePrefix.length()) {
-                        // same file
-                        return 0;
-                    }
-                    // +1 for '-'
-                    String indexStr = fileName.substring(prefixIndex + todayFileNamePrefix.length() + 1);
-                    try {
-                        return Integer.parseInt(indexStr);
-                    } catch (NumberFormatException e) {
-                        return null;
-                    }
-                }
-                return null;
-            })
-            .filter(Objects::nonNull)
-            .max(Integer::compareTo)
-            .map(integer -> increment ? integer + 1 : integer)
-            .orElse(0);
+    /**
+     * 扫描目录,只在启动和进入新周期时调用.
+     *
+     * @return 指定前缀已存在文件的最大序号(无序号的文件为0),不存在时返回-1
+     */
+    private int computeFileIndex(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(path -> parseFileIndex(prefix + fileSuffix, path.getFileName().toString()))
+                .max(Integer::compareTo)
+                .orElse(-1);
+        }
+    }
+
+    /**
+     * 严格匹配"前缀"或"前缀-数字"形式的文件名
+     *
+     * @return 序号,不匹配时返回-1
+     */
+    static int parseFileIndex(String prefix, String fileName) {
+        if (!fileName.startsWith(prefix)) {
+            return -1;
+        }
+        int length = fileName.length();
+        if (length == prefix.length()) {
+            return 0;
+        }
+        if (fileName.charAt(prefix.length()) != '-' || length == prefix.length() + 1 || length > prefix.length() + 10) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = prefix.length() + 1; i < length; i++) {
+            char c = fileName.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            index = index * 10 + (c - '0');
+        }
+        return index;
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static ScheduledExecutorService newCleanerExecutor() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vlog-file-cleaner-" + CLEANER_THREAD_INDEX.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
-    public boolean start() {
+    public synchronized boolean start() {
+        if (started()) {
+            return true;
+        }
+        // 停止后重新启动时重新打开文件
+        Tuple2<Path, FileChannel> currentLogFile = logFile.get();
+        if (Objects.isNull(currentLogFile) || !currentLogFile.getO2().isOpen()) {
+            init();
+        }
+        if (scheduledExecutorService.isShutdown()) {
+            scheduledExecutorService = newCleanerExecutor();
+        }
+        if (!immediateFlush && flushIntervalMillis > 0) {
+            flushTask = scheduledExecutorService.scheduleWithFixedDelay(
+                this::flushIfExpired,
+                flushIntervalMillis,
+                flushIntervalMillis,
+                TimeUnit.MILLISECONDS
+            );
+        }
         return super.start();
     }
 
+    public int getWriteBufferSize() {
+        return writeBuffer.capacity();
+    }
+
+    /**
+     * 设置写缓冲大小(最小4KB),需在start之前调用.
+     */
+    public synchronized void setWriteBufferSize(int writeBufferSize) {
+        if (started()) {
+            throw new IllegalStateException("file appender must be configured before start.");
+        }
+        flushWriteBuffer();
+        this.writeBuffer = ByteBuffer.allocateDirect(Math.max(writeBufferSize, MIN_WRITE_BUFFER_SIZE));
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * 开启/关闭内存映射模式,需在start之前调用.
+     * <p>
+     * 开启后写入只是内存复制,由操作系统负责落盘(进程崩溃时已写入的日志仍在page cache中),写缓冲与flush配置不再生效.
+     * 文件按映射窗口预分配,滚动或关闭时截断为实际长度;异常退出未截断的文件,再次打开时会去掉末尾的空字节.
+     * <p>
+     * 重新映射及截断之前显式释放上一个窗口({@link FileUtils#unmap});JVM不支持释放时窗口由GC回收,
+     * 此时Windows下无法截断仍被映射的文件,因此该模式只建议在POSIX系统上使用.
+     */
+    public synchronized void setMemoryMapped(boolean memoryMapped) {
+        if (started()) {
+            throw new IllegalStateException("file appender must be configured before start.");
+        }
+        if (this.memoryMapped != memoryMapped) {
+            flushWriteBuffer();
+            closeFileChannel(logFile.get());
+            this.memoryMapped = memoryMapped;
+            init();
+        }
+    }
+
+    public String getFileSuffix() {
+        return fileSuffix;
+    }
+
+    public RolloverGranularity getRolloverGranularity() {
+        return rolloverGranularity;
+    }
+
+    /**
+     * 设置按时间滚动的粒度,默认按天,需在start之前调用.
+     */
+    public synchronized void setRolloverGranularity(RolloverGranularity rolloverGranularity) {
+        if (started()) {
+            throw new IllegalStateException("file appender must be configured before start.");
+        }
+        if (this.rolloverGranularity != Objects.requireNonNull(rolloverGranularity)) {
+            flushWriteBuffer();
+            closeFileChannel(logFile.get());
+            this.rolloverGranularity = rolloverGranularity;
+            init();
+        }
+    }
+
+    public int getMappedRegionSize() {
+        return mappedRegionSize;
+    }
+
+    /**
+     * @param mappedRegionSize 每次映射的窗口大小(最小64KB),同时是文件预分配的粒度
+     */
+    public synchronized void setMappedRegionSize(int mappedRegionSize) {
+        this.mappedRegionSize = Math.max(mappedRegionSize, MIN_MAPPED_REGION_SIZE);
+    }
+
+    public boolean isImmediateFlush() {
+        return immediateFlush;
+    }
+
+    /**
+     * @param immediateFlush 是否每批事件结束时写出,关闭后只在缓冲满、超时或遇到flushLevel及以上事件时写出
+     */
+    public void setImmediateFlush(boolean immediateFlush) {
+        this.immediateFlush = immediateFlush;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * @param flushIntervalMillis 关闭immediateFlush时,数据在缓冲中停留的最长时间,<=0则不按时间写出.需在start之前调用.
+     */
+    public void setFlushIntervalMillis(long flushIntervalMillis) {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public Level getFlushLevel() {
+        return flushLevel;
+    }
+
+    /**
+     * @param flushLevel 不低于该级别的事件写入缓冲后立即写出,为null则不按级别写出
+     */
+    public void setFlushLevel(Level flushLevel) {
+        this.flushLevel = flushLevel;
+    }
+
+    /**
+     * 输出剩余事件后写出缓冲并关闭文件,清理线程在执行中的任务完成后退出.
+     */
     @Override
     public boolean stop() {
+        boolean stopped = super.stop();
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        synchronized (this) {
+            flushWriteBuffer();
+            fileOptionLock.lock();
+            try {
+                closeFileChannel(logFile.get());
+            } finally {
+                fileOptionLock.unlock();
+            }
+        }
         scheduledExecutorService.shutdown();
-        return super.stop();
+        try {
+            if (!scheduledExecutorService.awaitTermination(CLEANER_STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                scheduledExecutorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduledExecutorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return stopped;
     }
 
     @Override
@@ -152,90 +410,295 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
     }
 
     @Override
-    void doAppend(LogEvent event) {
+    public Layout<LogEvent> getLayout() {
+        return layout;
+    }
+
+    @Override
+    synchronized void doAppend(LogEvent event) {
+        bufferEvent(event);
+        endOfBatch();
+    }
+
+    @Override
+    synchronized void doAppend(List<LogEvent> events) {
+        for (LogEvent event : events) {
+            bufferEvent(event);
+        }
+        endOfBatch();
+    }
+
+    @Override
+    public synchronized void writeEncoded(LogEvent event, ByteBuffer encoded) {
         try {
-            String message = layout.format(event);
-            byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
-            Tuple2<Path, FileChannel> logFile = getLogFile(bytes.length);
+            bufferEncoded(encoded);
+            flushOnLevel(event);
+        } catch (Exception e) {
+            System.err.println(ThrowableUtils.throwableToStr(e));
+        }
+    }
+
+    @Override
+    public synchronized void endOfBatch() {
+        if (immediateFlush || isBufferExpired()) {
+            flushWriteBuffer();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        flushWriteBuffer();
+    }
+
+    @Override
+    void flushNow() {
+        flush();
+    }
+
+    private void bufferEvent(LogEvent event) {
+        try {
+            bufferText(formatEvent(event));
+            flushOnLevel(event);
+        } catch (Exception e) {
+            System.err.println(ThrowableUtils.throwableToStr(e));
+        }
+    }
+
+    /**
+     * 将事件格式化进复用的缓冲,过大的缓冲不保留
+     */
+    private StringBuilder formatEvent(LogEvent event) {
+        if (formatBuffer.capacity() > MAX_RETAINED_FORMAT_BUFFER_SIZE) {
+            formatBuffer = new StringBuilder(FORMAT_BUFFER_SIZE);
+        }
+        formatBuffer.setLength(0);
+        layout.encode(event, formatBuffer);
+        return formatBuffer;
+    }
+
+    private void flushOnLevel(LogEvent event) {
+        if (flushLevel != null && event.getLevel().compareTo(flushLevel) >= 0) {
+            flushWriteBuffer();
+        }
+    }
+
+    private boolean isBufferExpired() {
+        return flushIntervalMillis > 0
+            && writeBuffer.position() > 0
+            && System.nanoTime() - bufferedSinceNanos >= TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    /**
+     * 定时任务: 没有新事件时也保证缓冲数据不超过flushIntervalMillis未写出
+     */
+    private synchronized void flushIfExpired() {
+        if (isBufferExpired()) {
+            flushWriteBuffer();
+        }
+    }
+
+    /**
+     * 将文本直接编码进写缓冲(或映射窗口),空间不足时先写出;超过缓冲容量的消息编码后直接写入文件.
+     */
+    private void bufferText(CharSequence text) throws IOException {
+        int length = textEncoder.encodedLength(text);
+        Tuple2<Path, FileChannel> logFile = currentLogFile(length);
+        if (Objects.isNull(logFile)) {
+            return;
+        }
+        fileBytes += length;
+        if (memoryMapped) {
+            if (mappedRegion != null && mappedRegion.remaining() >= length) {
+                textEncoder.encode(text, mappedRegion);
+            } else {
+                writeMapped(logFile.getO2(), textEncoder.encode(text));
+            }
+            return;
+        }
+        if (reserveWriteBuffer(length)) {
+            textEncoder.encode(text, writeBuffer);
+        } else {
+            writeFully(logFile.getO2(), textEncoder.encode(text));
+        }
+    }
+
+    /**
+     * 将已编码的事件放入写缓冲(或映射窗口),空间不足时先写出;超过缓冲容量的消息直接写入文件.
+     */
+    private void bufferEncoded(ByteBuffer encoded) throws IOException {
+        int length = encoded.remaining();
+        Tuple2<Path, FileChannel> logFile = currentLogFile(length);
+        if (Objects.isNull(logFile)) {
+            return;
+        }
+        fileBytes += length;
+        if (memoryMapped) {
+            writeMapped(logFile.getO2(), encoded);
+        } else if (reserveWriteBuffer(length)) {
+            writeBuffer.put(encoded);
+        } else {
+            writeFully(logFile.getO2(), encoded);
+        }
+    }
+
+    /**
+     * @return 写缓冲是否能放下指定长度,放不下时先写出缓冲
+     */
+    private boolean reserveWriteBuffer(int length) {
+        if (length > writeBuffer.remaining()) {
+            flushWriteBuffer();
+            if (length > writeBuffer.capacity()) {
+                return false;
+            }
+        }
+        if (writeBuffer.position() == 0) {
+            bufferedSinceNanos = System.nanoTime();
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+
+    /**
+     * 写入映射窗口,调用前fileBytes已包含本次写入的长度
+     */
+    private void writeMapped(FileChannel fileChannel, ByteBuffer encoded) throws IOException {
+        long position = fileBytes - encoded.remaining();
+        int limit = encoded.limit();
+        while (encoded.hasRemaining()) {
+            if (mappedRegion == null || !mappedRegion.hasRemaining()) {
+                releaseMappedRegion();
+                // 映射超出文件大小的部分会扩展文件
+                mappedRegion = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, mappedRegionSize);
+            }
+            int n = Math.min(encoded.remaining(), mappedRegion.remaining());
+            encoded.limit(encoded.position() + n);
+            mappedRegion.put(encoded);
+            encoded.limit(limit);
+            position += n;
+        }
+    }
+
+    private void flushWriteBuffer() {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        try {
+            Tuple2<Path, FileChannel> logFile = this.logFile.get();
             if (Objects.nonNull(logFile)) {
-                int len = bytes.length;
-                int rem = len;
-                while (rem > 0) {
-                    int n = Math.min(rem, WRITE_BUFFER_SIZE);
-                    logWriteBuffer.get().clear();
-                    logWriteBuffer.get().put(bytes, (len - rem), n);
-                    logWriteBuffer.get().flip();
-                    logFile.getO2().write(logWriteBuffer.get());
-                    rem -= n;
+                while (writeBuffer.hasRemaining()) {
+                    logFile.getO2().write(writeBuffer);
                 }
             }
         } catch (Exception e) {
             System.err.println(ThrowableUtils.throwableToStr(e));
+        } finally {
+            writeBuffer.clear();
         }
     }
 
-    private Tuple2<Path, FileChannel> getLogFile(int messageLength) throws IOException {
-        String logFileNamePrefix = dateToLogFileName(LocalDateTime.now());
-        Tuple2<Path, FileChannel> fileAndChannel;
-        while (!isValidLogFile(fileAndChannel = logFile.get(), messageLength)) {
-            fileOptionLock.lock();
-            try {
-                if (isValidLogFile(fileAndChannel = logFile.get(), messageLength)) {
-                    return fileAndChannel;
-                }
-                try {
-                    // close the old channel
-                    closeFileChannel(logFile.get());
-                    LocalDateTime date = LocalDateTime.now();
-                    int fileIndex = computeFileIndex(date, true);
-                    fileAndChannel = openLogFile(logFileNamePrefix, fileIndex);
-                    logFile.set(fileAndChannel);
-                    // trigger expired clean task
-                    if (logFileRetentionDays > 0) {
-                        triggerCleanTask(date);
-                    }
-                } catch (IOException e) {
-                    System.err.println("[DefaultFileAppender] log file create error.");
-                    System.err.println(ThrowableUtils.throwableToStr(e));
-                    return null;
-                }
-            } finally {
-                fileOptionLock.unlock();
+    /**
+     * @return 写入指定长度消息的文件,需要时先按时间或大小滚动;失败返回null
+     */
+    private Tuple2<Path, FileChannel> currentLogFile(int messageLength) {
+        long now = System.currentTimeMillis();
+        Tuple2<Path, FileChannel> fileAndChannel = logFile.get();
+        if (now < nextRolloverMillis && !exceedsFileSize(messageLength) && Objects.nonNull(fileAndChannel)) {
+            return fileAndChannel;
+        }
+        return rollover(now);
+    }
+
+    /**
+     * 针对消息体大于文件大小上限的情况,我们允许它本次将内容追加进当前文件,作为兜底策略.
+     */
+    private boolean exceedsFileSize(int messageLength) {
+        return logFileSizeBytes > 0
+            && fileBytes > 0
+            && fileBytes + messageLength > logFileSizeBytes
+            && messageLength <= logFileSizeBytes;
+    }
+
+    private Tuple2<Path, FileChannel> rollover(long now) {
+        // 缓冲中的内容属于当前文件,滚动前先写出
+        flushWriteBuffer();
+        fileOptionLock.lock();
+        try {
+            closeFileChannel(logFile.get());
+            String prefix = rolloverGranularity.format(toLocalDateTime(now));
+            int fileIndex;
+            if (prefix.equals(filePrefix)) {
+                fileIndex = nextFileIndex;
+            } else {
+                // 进入新周期,目录中可能已有该周期的文件(如重启),此时才扫描目录
+                fileIndex = computeFileIndex(prefix) + 1;
             }
+            Tuple2<Path, FileChannel> fileAndChannel = openLogFile(prefix, fileIndex, now);
+            logFile.set(fileAndChannel);
+            // trigger expired clean task
+            if (logFileRetentionDays > 0) {
+                triggerCleanTask(toLocalDateTime(now));
+            }
+            return fileAndChannel;
+        } catch (IOException e) {
+            logFile.set(null);
+            // 稍后重试
+            nextRolloverMillis = now;
+            System.err.println("[DefaultFileAppender] log file create error.");
+            System.err.println(ThrowableUtils.throwableToStr(e));
+            return null;
+        } finally {
+            fileOptionLock.unlock();
         }
-        return fileAndChannel;
     }
 
     private ScheduledFuture<?> triggerCleanTask(LocalDateTime date) {
         return scheduledExecutorService.schedule(new CleanerTask(date, this), 0, TimeUnit.MILLISECONDS);
     }
 
-    private Tuple2<Path, FileChannel> openLogFile(String logFileNamePrefix, int fileIndex) throws IOException {
-        Path path = directory.resolve(logFileNamePrefix + (fileIndex == 0 ? "" : "-" + fileIndex));
-        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+    private Tuple2<Path, FileChannel> openLogFile(String logFileNamePrefix, int fileIndex, long now) throws IOException {
+        Path path = directory.resolve(logFileNamePrefix + fileSuffix + (fileIndex == 0 ? "" : "-" + fileIndex));
+        FileChannel fileChannel;
+        if (memoryMapped) {
+            fileChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+            releaseMappedRegion();
+            fileBytes = contentLength(fileChannel);
+        } else {
+            fileChannel = FileChannel.open(path, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+            fileBytes = fileChannel.size();
+        }
+        filePrefix = logFileNamePrefix;
+        nextFileIndex = fileIndex + 1;
+        nextRolloverMillis = rolloverGranularity.nextBoundary(now, ZoneId.systemDefault());
         return new Tuple2<>(path, fileChannel);
     }
 
-    private boolean isValidLogFile(Tuple2<Path, FileChannel> pathAndChannel, int messageLength) throws IOException {
-        if (Objects.isNull(pathAndChannel)) return false;
-        Path path = pathAndChannel.getO1();
-        String logFileName = path.getFileName().toString();
-        boolean isTodayFile = logFileName.startsWith(dateToLogFileName(LocalDateTime.now()));
-        boolean exists = Files.exists(pathAndChannel.getO1());
-        boolean sufficient = false;
-        if (exists && isTodayFile) {
-            // 针对消息体大于当前文件的情况,我们允许它本次将内容追加进去,作为兜底策略.
-            sufficient = capacitySufficient(pathAndChannel, messageLength) || isSuperMessage(messageLength);
+    /**
+     * @return 文件去掉末尾空字节(未截断的预分配部分)后的长度
+     */
+    private static long contentLength(FileChannel fileChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CONTENT_SCAN_BUFFER_SIZE);
+        long end = fileChannel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining() && fileChannel.read(buffer, start + buffer.position()) >= 0) {
+                // read fully
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) != 0) {
+                    return start + i + 1;
+                }
+            }
+            end = start;
         }
-        return isTodayFile && exists && sufficient;
-    }
-
-    private boolean capacitySufficient(Tuple2<Path, FileChannel> pathAndChannel, int messageLength) throws IOException {
-        return logFileSizeBytes <= 0 || (pathAndChannel.getO2().size() + messageLength <= logFileSizeBytes);
-    }
-
-    private boolean isSuperMessage(int messageLength) {
-        return logFileSizeBytes > 0 && messageLength > logFileSizeBytes;
+        return 0;
     }
 
     private void cleanExpiredFiles(LocalDateTime triggerDate) throws IOException {
@@ -286,7 +749,13 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
     }
 
     public static String dateToLogFileName(LocalDateTime date) {
-        return date.format(DateTimeFormatter.ISO_LOCAL_DATE);
+        return RolloverGranularity.DAY.format(date);
+    }
+
+    private void releaseMappedRegion() {
+        MappedByteBuffer region = mappedRegion;
+        mappedRegion = null;
+        FileUtils.unmap(region);
     }
 
     private void closeFileChannel(Tuple2<Path, FileChannel> logFile) {
@@ -296,6 +765,12 @@ public class DefaultFileAppender extends AsyncAppender<LogEvent> {
             .filter(AbstractInterruptibleChannel::isOpen)
             .ifPresent(fileChannel -> {
                 try {
+                    if (memoryMapped) {
+                        // 仍被映射的文件在Windows下不能截断
+                        releaseMappedRegion();
+                        // 去掉预分配的部分
+                        fileChannel.truncate(fileBytes);
+                    }
                     fileChannel.close();
                 } catch (IOException e) {
                     System.out.println("[DefaultFileAppender] close log file failed.");
@@ -1,26 +1,43 @@
 package io.github.supervate.vlog.appender;
 
+import io.github.supervate.vlog.common.TextEncoder;
+import io.github.supervate.vlog.common.ThrowableUtils;
 import io.github.supervate.vlog.exception.CreateAppenderException;
 import io.github.supervate.vlog.layout.Layout;
 import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.event.LogEvent;
 
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Objects;
 
 /**
  * 默认日志输出-打印流
+ * <p>
+ * 事件以UTF-8直接编码进批量缓冲({@link TextEncoder})后输出,一批事件中输出到同一个流的连续事件合并为一次write,每批flush一次.
  *
  * @author supervate
  * @since 2024/04/27
  * <p>
  * All rights Reserved.
  */
-public class DefaultPrintStreamAppender extends AsyncAppender<LogEvent> {
+public class DefaultPrintStreamAppender extends AsyncAppender<LogEvent> implements EncodedSink<LogEvent> {
+
+    private static final int BATCH_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int FORMAT_BUFFER_SIZE = 1024;
 
     Layout<LogEvent> layout;
     private final PrintStream outPrintStream;
     private final PrintStream errPrintStream;
+    /**
+     * 合并一批事件的缓冲及其目标流,只在消费线程中使用
+     */
+    private ByteBuffer batchBuffer = ByteBuffer.allocate(BATCH_BUFFER_SIZE);
+    private PrintStream batchStream;
+    private final TextEncoder textEncoder = new TextEncoder();
+    private StringBuilder formatBuffer = new StringBuilder(FORMAT_BUFFER_SIZE);
 
     public DefaultPrintStreamAppender(
         Layout<LogEvent> layout,
@@ -44,14 +61,88 @@ public class DefaultPrintStreamAppender extends AsyncAppender<LogEvent> {
         return event != null;
     }
 
+    @Override
+    public Layout<LogEvent> getLayout() {
+        return layout;
+    }
+
     @Override
     void doAppend(LogEvent event) {
-        if (started()) {
-            if (Objects.equals(event.getLevel(), Level.ERROR)) {
-                errPrintStream.print(layout.format(event));
-            } else {
-                outPrintStream.print(layout.format(event));
+        if (!isClosed()) {
+            bufferEvent(event);
+            endOfBatch();
+        }
+    }
+
+    @Override
+    void doAppend(List<LogEvent> events) {
+        if (isClosed()) {
+            return;
+        }
+        for (LogEvent event : events) {
+            bufferEvent(event);
+        }
+        endOfBatch();
+    }
+
+    @Override
+    public void writeEncoded(LogEvent event, ByteBuffer encoded) {
+        if (!isClosed()) {
+            reserve(event, encoded.remaining()).put(encoded);
+        }
+    }
+
+    @Override
+    public void endOfBatch() {
+        writeBatch();
+        outPrintStream.flush();
+        if (errPrintStream != outPrintStream) {
+            errPrintStream.flush();
+        }
+    }
+
+    /**
+     * 将事件直接编码进批量缓冲
+     */
+    private void bufferEvent(LogEvent event) {
+        try {
+            if (formatBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                formatBuffer = new StringBuilder(FORMAT_BUFFER_SIZE);
             }
+            formatBuffer.setLength(0);
+            layout.encode(event, formatBuffer);
+            textEncoder.encode(formatBuffer, reserve(event, textEncoder.encodedLength(formatBuffer)));
+        } catch (Exception e) {
+            System.err.println(ThrowableUtils.throwableToStr(e));
+        }
+    }
+
+    /**
+     * 切换目标流时先写出缓冲,并保证缓冲有足够空间
+     */
+    private ByteBuffer reserve(LogEvent event, int length) {
+        PrintStream target = Objects.equals(event.getLevel(), Level.ERROR) ? errPrintStream : outPrintStream;
+        if (target != batchStream) {
+            writeBatch();
+            batchStream = target;
+        }
+        if (length > batchBuffer.remaining()) {
+            ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(batchBuffer.capacity() * 2, batchBuffer.position() + length));
+            batchBuffer.flip();
+            newBuffer.put(batchBuffer);
+            batchBuffer = newBuffer;
+        }
+        return batchBuffer;
+    }
+
+    private void writeBatch() {
+        if (batchStream != null && batchBuffer.position() > 0) {
+            batchStream.write(batchBuffer.array(), batchBuffer.arrayOffset(), batchBuffer.position());
+        }
+        batchBuffer.clear();
+        // 避免单批超大消息长期占用内存
+        if (batchBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            batchBuffer = ByteBuffer.allocate(BATCH_BUFFER_SIZE);
         }
     }
 
@@ -0,0 +1,45 @@
+package io.github.supervate.vlog.appender;
+
+import io.github.supervate.vlog.layout.Layout;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 接收已格式化并编码事件的输出端
+ * <p>
+ * 由{@link AppenderCombiner}异步分发时使用: 同一批中使用同一个layout实例的输出端共享一次格式化/编码的结果.
+ * 方法只在分发的消费线程中调用.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public interface EncodedSink<E> {
+
+    /**
+     * @return 输出端使用的layout,相同实例的输出端共享编码结果
+     */
+    Layout<E> getLayout();
+
+    /**
+     * 写入(或缓冲)一个已编码的事件
+     *
+     * @param event   事件
+     * @param encoded layout格式化后以UTF-8编码的内容(position到limit),输出端可消费它;调用返回后会被复用
+     */
+    void writeEncoded(E event, ByteBuffer encoded);
+
+    /**
+     * 一批事件写入完成,输出缓冲的内容
+     */
+    void endOfBatch();
+
+    /**
+     * 立即输出缓冲的内容,不受写出策略(如immediateFlush)限制,用于优先事件
+     */
+    default void flush() {
+        endOfBatch();
+    }
+
+}
@@ -0,0 +1,39 @@
+package io.github.supervate.vlog.appender;
+
+/**
+ * 异步appender队列已满(事件数或估算字节数达到上限)时的处理策略
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ * @see AsyncAppender#setOverflowPolicy(OverflowPolicy)
+ */
+public enum OverflowPolicy {
+
+    /**
+     * 阻塞生产线程,直到有空间.
+     */
+    BLOCK,
+    /**
+     * 阻塞生产线程,超时后丢弃当前事件.
+     */
+    BLOCK_TIMEOUT,
+    /**
+     * 直接丢弃当前事件.
+     */
+    DROP_NEW,
+    /**
+     * 丢弃队列中最旧的事件,为当前事件腾出空间.
+     */
+    DROP_OLDEST,
+    /**
+     * 队列使用率达到阈值后,丢弃低于指定级别的事件;其余事件在队列满时阻塞.
+     */
+    DISCARD_BELOW_LEVEL;
+
+    public static OverflowPolicy of(String name) {
+        return OverflowPolicy.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+}
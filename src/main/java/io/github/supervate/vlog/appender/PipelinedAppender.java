@@ -0,0 +1,428 @@
+package io.github.supervate.vlog.appender;
+
+import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.TextEncoder;
+import io.github.supervate.vlog.common.ThrowableUtils;
+import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.event.MutableLogEvent;
+import io.github.supervate.vlog.layout.Layout;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 流水线异步输出: 并行格式化,按序写出
+ * <p>
+ * 每个事件入队时领取一个递增的序号,占用预分配环形槽位中的一个(事件复制进槽位自身的{@link MutableLogEvent},不分配对象).
+ * 格式化与编码在生产线程中进行({@link FormatMode#PRODUCER}),或由N个格式化线程按序号交错分担({@link FormatMode#WORKERS}),
+ * 结果编码进槽位自身的缓冲;唯一的写出线程严格按序号顺序将编码结果交给{@link EncodedSink},没有后续就绪的事件时结束一批.
+ * <p>
+ * 与{@link ShardedFileAppender}不同,输出仍是一个按调用(领取序号)顺序排列的文件,格式化的吞吐随核数扩展.
+ * layout会被多个线程并发调用,需线程安全(内置layout均满足).输出端需为同步模式,由写出线程调用.
+ * <p>
+ * 槽位用尽时生产者等待写出;各线程空闲时先自旋、让出,再以逐渐变长的park轮询,不需要生产者唤醒.
+ * 格式化中重入(如参数的toString中又打印日志)的事件使用独立的格式化缓冲,且不等待槽位,槽位用尽时丢弃.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class PipelinedAppender extends AbstractAppender<LogEvent> {
+
+    /**
+     * 格式化与编码在哪里进行
+     */
+    public enum FormatMode {
+        /**
+         * 在调用日志方法的线程中,不需要额外的线程,但增加调用方的耗时
+         */
+        PRODUCER,
+        /**
+         * 在格式化线程池中
+         */
+        WORKERS;
+
+        public static FormatMode of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long MIN_PARK_NANOS = 50_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
+    private static final long STOP_JOIN_GRACE_MILLIS = 1000;
+    private static final AtomicInteger THREAD_INDEX = new AtomicInteger();
+    /**
+     * 领取序号关闭后的标记位,写出线程退出时置位,之后不再能领取序号
+     */
+    private static final long CLAIM_CLOSED = Long.MIN_VALUE;
+    private static final ThreadLocal<FormatContext> FORMAT_CONTEXT = ThreadLocal.withInitial(FormatContext::new);
+
+    private final Appender<LogEvent> sinkAppender;
+    private final EncodedSink<LogEvent> sink;
+    private final Layout<LogEvent> layout;
+    private final FormatMode formatMode;
+    private final int workerCount;
+    private final Slot[] slots;
+    private final int mask;
+    /**
+     * 下一个待领取的序号,置{@link #CLAIM_CLOSED}位后不再能领取
+     */
+    private final AtomicLong claimSequence = new AtomicLong();
+    /**
+     * 下一个待写出的序号,小于它的槽位可被复用
+     */
+    private volatile long writtenSequence;
+    private final LongAdder dropped = new LongAdder();
+    private long stopTimeoutMillis = Constants.DEFAULT_ASYNC_STOP_TIMEOUT;
+    private volatile boolean stopping;
+    private volatile long stopDeadline;
+    /**
+     * 写出线程已退出,之后领取的序号不会再被写出
+     */
+    private volatile boolean terminated = true;
+    private final List<Thread> threads = new ArrayList<>();
+
+    /**
+     * @param sink        同步模式的输出端,如{@code setAsync(false)}的{@link DefaultFileAppender},生命周期由本appender管理
+     * @param formatMode  格式化与编码在哪里进行
+     * @param workerCount WORKERS模式下格式化线程数
+     * @param capacity    槽位数(会向上取整为2的幂)
+     */
+    public <S extends Appender<LogEvent> & EncodedSink<LogEvent>> PipelinedAppender(
+        S sink,
+        FormatMode formatMode,
+        int workerCount,
+        int capacity
+    ) {
+        if (sink instanceof AsyncAppender && ((AsyncAppender<?>) sink).isAsync()) {
+            throw new IllegalArgumentException("pipelined sink must be synchronous.");
+        }
+        this.sinkAppender = sink;
+        this.sink = sink;
+        this.layout = sink.getLayout();
+        this.formatMode = formatMode == null ? FormatMode.WORKERS : formatMode;
+        this.workerCount = Math.max(workerCount, 1);
+        int size = 1;
+        while (size < Math.max(capacity, 2)) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+    }
+
+    public FormatMode getFormatMode() {
+        return formatMode;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getStopTimeoutMillis() {
+        return stopTimeoutMillis;
+    }
+
+    /**
+     * @param stopTimeoutMillis stop时等待剩余事件输出的最长时间
+     */
+    public void setStopTimeoutMillis(long stopTimeoutMillis) {
+        this.stopTimeoutMillis = Math.max(stopTimeoutMillis, 0);
+    }
+
+    /**
+     * @return 停止后收到、写出线程退出后才领取到槽位或重入时槽位不足而丢弃的事件数
+     */
+    public long getDroppedEventCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public synchronized boolean start() {
+        if (started()) {
+            return true;
+        }
+        if (!sinkAppender.started()) {
+            sinkAppender.start();
+        }
+        stopping = false;
+        terminated = false;
+        threads.clear();
+        long base = writtenSequence;
+        // 上次停止超时未写出的序号不再等待
+        claimSequence.set(base);
+        for (Slot slot : slots) {
+            slot.published = -1;
+            slot.formatted = -1;
+        }
+        threads.add(newThread(() -> write(base), "writer"));
+        if (formatMode == FormatMode.WORKERS) {
+            for (int i = 0; i < workerCount; i++) {
+                // 每个格式化线程负责序号 first, first + workerCount, ...
+                long first = base + Math.floorMod(i - base, (long) workerCount);
+                threads.add(newThread(() -> format(first), "formatter"));
+            }
+        }
+        super.start();
+        threads.forEach(Thread::start);
+        return true;
+    }
+
+    /**
+     * 停止接收事件,在stopTimeoutMillis内写出已领取序号的事件后停止输出端.
+     */
+    @Override
+    public synchronized boolean stop() {
+        if (!started()) {
+            return true;
+        }
+        stopDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeoutMillis);
+        stopping = true;
+        super.stop();
+        for (Thread thread : threads) {
+            try {
+                thread.join(stopTimeoutMillis + STOP_JOIN_GRACE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long remaining = (claimSequence.get() & ~CLAIM_CLOSED) - writtenSequence;
+        if (remaining > 0) {
+            System.err.printf(
+                "[%s] stop timeout after %d ms, %d events not written.%n",
+                getClass().getSimpleName(),
+                stopTimeoutMillis,
+                remaining
+            );
+        }
+        return sinkAppender.stop();
+    }
+
+    @Override
+    public boolean support(LogEvent event) {
+        return event != null;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        if (stopping || !started()) {
+            dropped.increment();
+            return;
+        }
+        FormatContext context = FORMAT_CONTEXT.get();
+        // 重入时本线程正在格式化的事件尚未就绪,等待槽位可能永远等不到写出
+        boolean reentrant = context.inUse;
+        long sequence = claim(reentrant);
+        if (sequence < 0) {
+            dropped.increment();
+            return;
+        }
+        // 槽位仍被未写出的事件占用时等待
+        for (int counter = 0; sequence - writtenSequence >= slots.length; counter++) {
+            if (terminated) {
+                dropped.increment();
+                return;
+            }
+            backOff(counter);
+        }
+        Slot slot = slots[(int) sequence & mask];
+        slot.event.copyFrom(event);
+        if (formatMode == FormatMode.PRODUCER) {
+            (reentrant ? new FormatContext() : context).encode(layout, slot);
+            slot.formatted = sequence;
+        } else {
+            slot.published = sequence;
+        }
+    }
+
+    /**
+     * 领取一个序号
+     *
+     * @param reentrant 是否重入,重入时槽位不足不等待
+     * @return 序号,写出线程已退出或重入时槽位不足返回-1
+     */
+    private long claim(boolean reentrant) {
+        while (true) {
+            long current = claimSequence.get();
+            if ((current & CLAIM_CLOSED) != 0 || reentrant && current - writtenSequence >= slots.length) {
+                return -1;
+            }
+            if (claimSequence.compareAndSet(current, current + 1)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * 格式化线程: 依次处理first, first + workerCount, ...
+     */
+    private void format(long first) {
+        // 与生产线程共用线程本地的格式化缓冲,以便识别格式化中的重入
+        FormatContext context = FORMAT_CONTEXT.get();
+        long sequence = first;
+        int counter = 0;
+        while (true) {
+            Slot slot = slots[(int) sequence & mask];
+            if (slot.published == sequence) {
+                context.encode(layout, slot);
+                slot.formatted = sequence;
+                sequence += workerCount;
+                counter = 0;
+            } else if (terminated) {
+                // 写出线程只在所有已领取的事件写出或超时后退出
+                return;
+            } else {
+                backOff(counter++);
+            }
+        }
+    }
+
+    /**
+     * 写出线程: 严格按序号写出,没有就绪的后续事件时结束一批
+     */
+    private void write(long first) {
+        long sequence = first;
+        boolean pending = false;
+        int counter = 0;
+        try {
+            while (true) {
+                Slot slot = slots[(int) sequence & mask];
+                if (slot.formatted == sequence) {
+                    try {
+                        sink.writeEncoded(slot.event, slot.encoded);
+                    } catch (Exception e) {
+                        System.err.println(ThrowableUtils.throwableToStr(e));
+                    }
+                    slot.event.clear();
+                    writtenSequence = ++sequence;
+                    pending = true;
+                    counter = 0;
+                    continue;
+                }
+                if (pending) {
+                    endOfBatch();
+                    pending = false;
+                }
+                // 关闭领取与已写出的序号比较原子进行,已领取序号的事件不会被遗漏
+                if (stopping && (claimSequence.compareAndSet(sequence, sequence | CLAIM_CLOSED) || isStopTimeout())) {
+                    return;
+                }
+                backOff(counter++);
+            }
+        } finally {
+            closeClaim();
+            terminated = true;
+        }
+    }
+
+    private void endOfBatch() {
+        try {
+            sink.endOfBatch();
+        } catch (Exception e) {
+            System.err.println(ThrowableUtils.throwableToStr(e));
+        }
+    }
+
+    private void closeClaim() {
+        long current;
+        do {
+            current = claimSequence.get();
+        } while ((current & CLAIM_CLOSED) == 0 && !claimSequence.compareAndSet(current, current | CLAIM_CLOSED));
+    }
+
+    private boolean isStopTimeout() {
+        return System.nanoTime() - stopDeadline >= 0;
+    }
+
+    private Thread newThread(Runnable runnable, String role) {
+        Thread thread = new Thread(runnable, "vlog-pipeline-" + role + "-" + THREAD_INDEX.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void backOff(int counter) {
+        if (counter < SPIN_TRIES) {
+            return;
+        }
+        if (counter < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+            return;
+        }
+        // 空闲越久park越长
+        int parks = counter - SPIN_TRIES - YIELD_TRIES;
+        LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << Math.min(parks >> 4, 5), MAX_PARK_NANOS));
+    }
+
+    /**
+     * 环形槽位: 事件副本与编码结果.序号字段以volatile写发布,读到对应序号即可见槽位内容.
+     */
+    private static final class Slot {
+        private final MutableLogEvent event = new MutableLogEvent(Constants.DEFAULT_REUSABLE_EVENT_ARGUMENT_SIZE);
+        private ByteBuffer encoded;
+        /**
+         * 事件已复制进槽位(WORKERS模式)
+         */
+        private volatile long published = -1;
+        /**
+         * 编码结果已就绪
+         */
+        private volatile long formatted = -1;
+    }
+
+    /**
+     * 每个格式化线程(或生产线程)复用的格式化缓冲与编码器
+     */
+    private static final class FormatContext {
+        private StringBuilder formatBuffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+        private final TextEncoder textEncoder = new TextEncoder();
+        /**
+         * 正在格式化,此时本线程再打印日志为重入
+         */
+        private boolean inUse;
+
+        private void encode(Layout<LogEvent> layout, Slot slot) {
+            if (formatBuffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                formatBuffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+            }
+            formatBuffer.setLength(0);
+            inUse = true;
+            try {
+                layout.encode(slot.event, formatBuffer);
+            } catch (Exception e) {
+                // 写出线程按序等待,失败的事件也需要就绪
+                formatBuffer.setLength(0);
+                System.err.println(ThrowableUtils.throwableToStr(e));
+            } finally {
+                inUse = false;
+            }
+            int length = textEncoder.encodedLength(formatBuffer);
+            ByteBuffer buffer = slot.encoded;
+            if (buffer == null || buffer.capacity() < length || buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                buffer = ByteBuffer.allocate(Math.max(length, INITIAL_BUFFER_SIZE));
+                slot.encoded = buffer;
+            }
+            buffer.clear();
+            textEncoder.encode(formatBuffer, buffer);
+            buffer.flip();
+        }
+    }
+
+}
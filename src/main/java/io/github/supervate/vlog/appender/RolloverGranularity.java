@@ -0,0 +1,54 @@
+package io.github.supervate.vlog.appender;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 日志文件按时间滚动的粒度
+ * <p>
+ * 文件名前缀: DAY为2024-04-27,HOUR为2024-04-27T10,MINUTE为2024-04-27T1005;按大小滚动的文件追加"-n".
+ * 前缀都以日期开头,过期清理按日期判断.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ * @see DefaultFileAppender#setRolloverGranularity(RolloverGranularity)
+ */
+public enum RolloverGranularity {
+
+    DAY(DateTimeFormatter.ISO_LOCAL_DATE, ChronoUnit.DAYS),
+    HOUR(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH"), ChronoUnit.HOURS),
+    MINUTE(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HHmm"), ChronoUnit.MINUTES);
+
+    private final DateTimeFormatter formatter;
+    private final ChronoUnit unit;
+
+    RolloverGranularity(DateTimeFormatter formatter, ChronoUnit unit) {
+        this.formatter = formatter;
+        this.unit = unit;
+    }
+
+    /**
+     * @return 时间所在周期的文件名前缀
+     */
+    public String format(LocalDateTime date) {
+        return date.format(formatter);
+    }
+
+    /**
+     * @return 时间所在周期结束(下一次滚动)的时间戳
+     */
+    public long nextBoundary(long epochMillis, ZoneId zoneId) {
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), zoneId);
+        return date.truncatedTo(unit).plus(1, unit).atZone(zoneId).toInstant().toEpochMilli();
+    }
+
+    public static RolloverGranularity of(String name) {
+        return RolloverGranularity.valueOf(name.trim().toUpperCase());
+    }
+
+}
@@ -0,0 +1,252 @@
+package io.github.supervate.vlog.appender;
+
+import io.github.supervate.vlog.layout.CachedTimestampFormatter;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * 分片日志文件的合并读取
+ * <p>
+ * 每个分片(含按大小滚动的多个文件)按文件顺序读取,各分片之间按事件时间戳归并,时间戳相同时按分片序号;
+ * 分片内的顺序保持不变.没有时间戳的行(如异常堆栈)视为上一条日志的续行,与其一起输出.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ * @see ShardedFileAppender
+ */
+public class ShardMergeReader implements Closeable {
+
+    /**
+     * 时间戳解析器对续行返回的值
+     */
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    /**
+     * 解析以"[2024-04-27T17:37:22.166]"开头的行,适用于DefaultLineLayout及以[%d]开头的PatternLayout
+     */
+    public static final ToLongFunction<String> BRACKETED_TIMESTAMP = ShardMergeReader::parseBracketedTimestamp;
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern(CachedTimestampFormatter.DEFAULT_PATTERN);
+    private static final int TIMESTAMP_LENGTH = 23;
+
+    private final ToLongFunction<String> timestampParser;
+    private final PriorityQueue<ShardCursor> cursors = new PriorityQueue<>(
+        Comparator.<ShardCursor>comparingLong(cursor -> cursor.timestamp).thenComparingInt(cursor -> cursor.shardIndex)
+    );
+    private final List<ShardCursor> allCursors = new ArrayList<>();
+
+    /**
+     * @param shards          每个分片按顺序排列的文件
+     * @param timestampParser 从行中解析事件时间戳,续行返回{@link #NO_TIMESTAMP}
+     */
+    public ShardMergeReader(List<List<Path>> shards, ToLongFunction<String> timestampParser) throws IOException {
+        this.timestampParser = timestampParser;
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                ShardCursor cursor = new ShardCursor(i, shards.get(i));
+                allCursors.add(cursor);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开目录中指定周期的所有分片文件
+     *
+     * @param periodPrefix 周期前缀,如: 2024-04-27(见{@link RolloverGranularity#format})
+     */
+    public static ShardMergeReader open(Path directory, String periodPrefix) throws IOException {
+        return new ShardMergeReader(listShardFiles(directory, periodPrefix), BRACKETED_TIMESTAMP);
+    }
+
+    /**
+     * @return 按分片序号排列的分片文件,每个分片的文件按大小滚动的序号排列
+     */
+    public static List<List<Path>> listShardFiles(Path directory, String periodPrefix) throws IOException {
+        String shardPrefix = periodPrefix + ShardedFileAppender.SHARD_SUFFIX;
+        TreeMap<Integer, TreeMap<Integer, Path>> shardFiles = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> {
+                String fileName = path.getFileName().toString();
+                if (!fileName.startsWith(shardPrefix)) {
+                    return;
+                }
+                int end = shardPrefix.length();
+                while (end < fileName.length() && Character.isDigit(fileName.charAt(end))) {
+                    end++;
+                }
+                if (end == shardPrefix.length() || end - shardPrefix.length() > 9) {
+                    return;
+                }
+                int fileIndex = DefaultFileAppender.parseFileIndex(fileName.substring(0, end), fileName);
+                if (fileIndex >= 0) {
+                    shardFiles
+                        .computeIfAbsent(Integer.parseInt(fileName.substring(shardPrefix.length(), end)), shard -> new TreeMap<>())
+                        .put(fileIndex, path);
+                }
+            });
+        }
+        List<List<Path>> shards = new ArrayList<>();
+        for (TreeMap<Integer, Path> files : shardFiles.values()) {
+            shards.add(new ArrayList<>(files.values()));
+        }
+        return shards;
+    }
+
+    /**
+     * @return 下一条日志(含续行,行之间以换行符分隔,不含末尾换行),没有时返回null
+     */
+    public String readEntry() throws IOException {
+        ShardCursor cursor = cursors.poll();
+        if (cursor == null) {
+            return null;
+        }
+        String entry = cursor.entry.toString();
+        if (cursor.advance()) {
+            cursors.add(cursor);
+        }
+        return entry;
+    }
+
+    /**
+     * 将合并后的所有日志写入writer
+     *
+     * @return 写入的日志条数
+     */
+    public long mergeTo(Writer writer) throws IOException {
+        long count = 0;
+        String entry;
+        while ((entry = readEntry()) != null) {
+            writer.write(entry);
+            writer.write(System.lineSeparator());
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (ShardCursor cursor : allCursors) {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private static long parseBracketedTimestamp(String line) {
+        if (line.length() < TIMESTAMP_LENGTH + 2 || line.charAt(0) != '[' || line.charAt(TIMESTAMP_LENGTH + 1) != ']') {
+            return NO_TIMESTAMP;
+        }
+        try {
+            return LocalDateTime
+                .parse(line.substring(1, TIMESTAMP_LENGTH + 1), TIMESTAMP_FORMATTER)
+                .atZone(ZoneId.systemDefault())
+                .toInstant()
+                .toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return NO_TIMESTAMP;
+        }
+    }
+
+    /**
+     * 一个分片的读取位置: 当前日志及预读的下一条日志的首行
+     */
+    private final class ShardCursor implements Closeable {
+
+        private final int shardIndex;
+        private final List<Path> files;
+        private int nextFile;
+        private BufferedReader reader;
+        private String pendingLine;
+        private final StringBuilder entry = new StringBuilder();
+        private long timestamp;
+
+        private ShardCursor(int shardIndex, List<Path> files) {
+            this.shardIndex = shardIndex;
+            this.files = files;
+        }
+
+        /**
+         * 读取下一条日志
+         *
+         * @return 是否还有日志
+         */
+        private boolean advance() throws IOException {
+            entry.setLength(0);
+            String line = pendingLine != null ? pendingLine : readLine();
+            pendingLine = null;
+            if (line == null) {
+                return false;
+            }
+            entry.append(line);
+            timestamp = timestampParser.applyAsLong(line);
+            while ((line = readLine()) != null) {
+                if (timestampParser.applyAsLong(line) != NO_TIMESTAMP) {
+                    pendingLine = line;
+                    break;
+                }
+                entry.append(System.lineSeparator()).append(line);
+            }
+            return true;
+        }
+
+        /**
+         * 当前文件读完后继续读取该分片的下一个文件
+         */
+        private String readLine() throws IOException {
+            while (true) {
+                if (reader == null) {
+                    if (nextFile >= files.size()) {
+                        return null;
+                    }
+                    reader = Files.newBufferedReader(files.get(nextFile++), StandardCharsets.UTF_8);
+                }
+                String line = reader.readLine();
+                if (line != null) {
+                    return line;
+                }
+                reader.close();
+                reader = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+
+    }
+
+}
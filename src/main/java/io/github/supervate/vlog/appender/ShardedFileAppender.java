@@ -0,0 +1,131 @@
+package io.github.supervate.vlog.appender;
+
+import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.layout.Layout;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * 分片的文件输出
+ * <p>
+ * 事件按logger名称或线程名称分区到N个{@link DefaultFileAppender},每个分片有自己的队列与消费线程,
+ * 格式化、编码与写文件在各分片的消费线程中并行进行.分片文件与普通日志文件同目录同命名规则,
+ * 只在周期前缀后追加分片后缀,如: 2024-04-27-shard3, 按大小滚动为2024-04-27-shard3-1.
+ * <p>
+ * 顺序保证: 同一分区的事件进入同一个分片的队列,因此分区内(同一logger或同一线程)保持调用顺序;
+ * 不同分片之间不保证顺序,需要统一视图时用{@link ShardMergeReader}按时间戳合并.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class ShardedFileAppender extends AbstractAppender<LogEvent> {
+
+    public static final String SHARD_SUFFIX = "-shard";
+
+    /**
+     * 分区方式
+     */
+    public enum ShardKey {
+        /**
+         * 按logger名称分区,同一logger的事件有序
+         */
+        LOGGER,
+        /**
+         * 按线程名称分区,同一线程的事件有序
+         */
+        THREAD;
+
+        public static ShardKey of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final List<DefaultFileAppender> shards;
+    private final ShardKey shardKey;
+
+    /**
+     * @param shardCount 分片数量
+     * @param shardKey   分区方式
+     * @param layout     各分片共用的layout,需线程安全
+     */
+    public ShardedFileAppender(
+        Layout<LogEvent> layout,
+        Path directory,
+        int logFileRetentionDays,
+        int logFileSizeBytes,
+        int shardCount,
+        ShardKey shardKey
+    ) {
+        List<DefaultFileAppender> appenders = new ArrayList<>();
+        for (int i = 0; i < Math.max(shardCount, 1); i++) {
+            appenders.add(new DefaultFileAppender(layout, directory, logFileRetentionDays, logFileSizeBytes, SHARD_SUFFIX + i));
+        }
+        this.shards = Collections.unmodifiableList(appenders);
+        this.shardKey = shardKey == null ? ShardKey.LOGGER : shardKey;
+    }
+
+    /**
+     * 对每个分片应用相同的配置(队列、写缓冲、滚动等),需在start之前调用
+     */
+    public void configShards(Consumer<DefaultFileAppender> configurer) {
+        shards.forEach(configurer);
+    }
+
+    public List<DefaultFileAppender> getShards() {
+        return shards;
+    }
+
+    public ShardKey getShardKey() {
+        return shardKey;
+    }
+
+    @Override
+    public synchronized boolean start() {
+        for (DefaultFileAppender shard : shards) {
+            shard.start();
+        }
+        return super.start();
+    }
+
+    /**
+     * 依次停止各分片,每个分片在自身的超时时间内输出剩余事件
+     */
+    @Override
+    public synchronized boolean stop() {
+        super.stop();
+        for (DefaultFileAppender shard : shards) {
+            shard.stop();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean support(LogEvent event) {
+        return event != null;
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        shards.get(shardIndex(event)).append(event);
+    }
+
+    private int shardIndex(LogEvent event) {
+        int count = shards.size();
+        if (count == 1) {
+            return 0;
+        }
+        String key = shardKey == ShardKey.THREAD || event.getLogger() == null
+                     ? event.getThreadName()
+                     : event.getLogger().getName();
+        int hash = key == null ? 0 : key.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % count;
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.github.supervate.vlog.common;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 缓存时钟,由后台守护线程按固定精度刷新时间,读取时只是一次volatile读.
+ * <p>
+ * {@link #cached()}精度为1ms;{@link #coarse()}精度为10ms,刷新线程开销更低,时间戳误差更大.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class CachedClock implements Clock {
+
+    public static final long CACHED_PRECISION_MILLIS = 1;
+    public static final long COARSE_PRECISION_MILLIS = 10;
+
+    private volatile long millis;
+
+    public CachedClock(long precisionMillis) {
+        long precisionNanos = Math.max(precisionMillis, 1) * 1_000_000L;
+        this.millis = System.currentTimeMillis();
+        Thread updater = new Thread(() -> {
+            while (true) {
+                millis = System.currentTimeMillis();
+                LockSupport.parkNanos(precisionNanos);
+            }
+        }, "vlog-clock-" + precisionMillis + "ms");
+        updater.setDaemon(true);
+        updater.start();
+    }
+
+    public static CachedClock cached() {
+        return CachedHolder.INSTANCE;
+    }
+
+    public static CachedClock coarse() {
+        return CoarseHolder.INSTANCE;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis;
+    }
+
+    private static class CachedHolder {
+        private static final CachedClock INSTANCE = new CachedClock(CACHED_PRECISION_MILLIS);
+    }
+
+    private static class CoarseHolder {
+        private static final CachedClock INSTANCE = new CachedClock(COARSE_PRECISION_MILLIS);
+    }
+
+}
@@ -0,0 +1,17 @@
+package io.github.supervate.vlog.common;
+
+/**
+ * 时钟,提供日志事件的时间戳(毫秒).
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ * @see SystemClock
+ * @see CachedClock
+ */
+public interface Clock {
+
+    long currentTimeMillis();
+
+}
@@ -27,9 +27,69 @@ public class Constants {
     public static final String SYSTEM_PROPERTY_LOG_LEVEL = "vt.vlog.level";
     public static final String SYSTEM_PROPERTY_LOG_FILE_RETENTION = "vt.vlog.file.retention";
     public static final String SYSTEM_PROPERTY_LOG_FILE_SIZE = "vt.vlog.file.size";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_ROLLOVER = "vt.vlog.file.rollover";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_BUFFER_SIZE = "vt.vlog.file.buffer.size";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_IMMEDIATE_FLUSH = "vt.vlog.file.immediate.flush";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_FLUSH_INTERVAL = "vt.vlog.file.flush.interval";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_FLUSH_LEVEL = "vt.vlog.file.flush.level";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_MMAP = "vt.vlog.file.mmap";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_MMAP_REGION_SIZE = "vt.vlog.file.mmap.region.size";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_SHARDS = "vt.vlog.file.shards";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_SHARD_KEY = "vt.vlog.file.shard.key";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_PIPELINE = "vt.vlog.file.pipeline";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_PIPELINE_WORKERS = "vt.vlog.file.pipeline.workers";
+    public static final String SYSTEM_PROPERTY_LOG_FILE_PIPELINE_CAPACITY = "vt.vlog.file.pipeline.capacity";
     public static final String SYSTEM_PROPERTY_LOG_LAYOUT_IMPL = "vt.vlog.layout.impl";
+    public static final String SYSTEM_PROPERTY_LOG_LAYOUT_JSON_EPOCH = "vt.vlog.layout.json.epoch";
+    public static final String SYSTEM_PROPERTY_LOG_LAYOUT_PATTERN = "vt.vlog.layout.pattern";
+    public static final String SYSTEM_PROPERTY_LOG_STACK_MAX_DEPTH = "vt.vlog.stack.max.depth";
+    public static final String SYSTEM_PROPERTY_LOG_STACK_FILTER_PACKAGES = "vt.vlog.stack.filter.packages";
+    public static final String SYSTEM_PROPERTY_LOG_STACK_CACHE_SIZE = "vt.vlog.stack.cache.size";
+    public static final String SYSTEM_PROPERTY_LOG_STACK_DEDUP = "vt.vlog.stack.dedup";
+    public static final String SYSTEM_PROPERTY_LOG_LAYOUT_TEMPLATE_CACHE_SIZE = "vt.vlog.layout.template.cache.size";
+    public static final String SYSTEM_PROPERTY_LOG_SUPPLIER_DEFERRED = "vt.vlog.supplier.deferred";
+    public static final String SYSTEM_PROPERTY_LOG_GARBAGE_FREE = "vt.vlog.garbage.free";
+    public static final String SYSTEM_PROPERTY_LOG_GARBAGE_FREE_POOL_SIZE = "vt.vlog.garbage.free.pool.size";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_QUEUE_SIZE = "vt.vlog.async.queue.size";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_WAIT_STRATEGY = "vt.vlog.async.wait.strategy";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_BATCH_SIZE = "vt.vlog.async.batch.size";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_PRIORITY_LEVEL = "vt.vlog.async.priority.level";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_PRIORITY_QUEUE_SIZE = "vt.vlog.async.priority.queue.size";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_STOP_TIMEOUT = "vt.vlog.async.stop.timeout";
+    public static final String SYSTEM_PROPERTY_LOG_SHUTDOWN_HOOK = "vt.vlog.shutdown.hook";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_QUEUE_BYTES = "vt.vlog.async.queue.bytes";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_OVERFLOW_POLICY = "vt.vlog.async.overflow.policy";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_OVERFLOW_TIMEOUT = "vt.vlog.async.overflow.timeout";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_DISCARD_LEVEL = "vt.vlog.async.discard.level";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_DISCARD_RATIO = "vt.vlog.async.discard.ratio";
+    public static final String SYSTEM_PROPERTY_LOG_ASYNC_DISCARD_REPORT_INTERVAL = "vt.vlog.async.discard.report.interval";
+    public static final String SYSTEM_PROPERTY_LOG_CLOCK = "vt.vlog.clock";
+    public static final String SYSTEM_PROPERTY_LOG_RATE_LIMIT = "vt.vlog.rate.limit";
+    public static final String SYSTEM_PROPERTY_LOG_RATE_LIMIT_BURST = "vt.vlog.rate.limit.burst";
+    public static final String SYSTEM_PROPERTY_LOG_RATE_LIMIT_KEY = "vt.vlog.rate.limit.key";
+    public static final String SYSTEM_PROPERTY_LOG_REPEAT_SUPPRESS = "vt.vlog.repeat.suppress";
+    public static final String SYSTEM_PROPERTY_LOG_REPEAT_MATCH = "vt.vlog.repeat.match";
+    public static final String SYSTEM_PROPERTY_LOG_REPEAT_ALLOWED = "vt.vlog.repeat.allowed";
+    public static final String SYSTEM_PROPERTY_LOG_REPEAT_WINDOW = "vt.vlog.repeat.window";
+    public static final String SYSTEM_PROPERTY_LOG_FILTER_DENY_LOGGERS = "vt.vlog.filter.deny.loggers";
+    public static final String SYSTEM_PROPERTY_LOG_FILTER_DENY_MARKERS = "vt.vlog.filter.deny.markers";
+    public static final String SYSTEM_PROPERTY_LOG_FILTER_IMPL = "vt.vlog.filter.impl";
 
     public static final int DEFAULT_LOG_FILE_RETENTION = 7;
     public static final int DEFAULT_LOG_FILE_SIZE = 0;
+    public static final int DEFAULT_LOG_FILE_BUFFER_SIZE = 256 * 1024;
+    public static final long DEFAULT_LOG_FILE_FLUSH_INTERVAL = 1000;
+    public static final int DEFAULT_LOG_FILE_MAPPED_REGION_SIZE = 32 * 1024 * 1024;
+    public static final int DEFAULT_REUSABLE_EVENT_ARGUMENT_SIZE = 8;
+    public static final int DEFAULT_ASYNC_QUEUE_SIZE = 65536;
+    public static final int DEFAULT_ASYNC_BATCH_SIZE = 256;
+    public static final int DEFAULT_ASYNC_PRIORITY_QUEUE_SIZE = 1024;
+    public static final int DEFAULT_PIPELINE_WORKERS = 2;
+    public static final int DEFAULT_PIPELINE_CAPACITY = 4096;
+    public static final long DEFAULT_ASYNC_STOP_TIMEOUT = 3000;
+    public static final long DEFAULT_ASYNC_OVERFLOW_TIMEOUT = 100;
+    public static final double DEFAULT_ASYNC_DISCARD_FILL_RATIO = 0.8;
+    public static final long DEFAULT_ASYNC_DISCARD_REPORT_INTERVAL = 10_000;
+    public static final long DEFAULT_REPEAT_WINDOW = 10_000;
 
 }
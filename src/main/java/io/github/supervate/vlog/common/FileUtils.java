@@ -1,6 +1,10 @@
 package io.github.supervate.vlog.common;
 
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -17,6 +21,11 @@ import java.nio.file.attribute.BasicFileAttributes;
  */
 public class FileUtils {
 
+    /**
+     * 释放映射内存的方式,当前JVM不支持时为null
+     */
+    private static final Unmapper UNMAPPER = createUnmapper();
+
     public static void deleteDirectoryRecursively(Path directoryPath) throws IOException {
         if (!Files.isDirectory(directoryPath)) {
             return;
@@ -36,4 +45,48 @@ public class FileUtils {
         });
     }
 
+    /**
+     * 立即释放映射的内存,不等待GC;释放后不能再访问该buffer,调用方需保证没有其他引用.
+     *
+     * @return 是否已释放,当前JVM不支持时返回false,此时映射由GC回收
+     */
+    public static boolean unmap(MappedByteBuffer buffer) {
+        if (buffer == null || UNMAPPER == null) {
+            return false;
+        }
+        try {
+            UNMAPPER.unmap(buffer);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Unmapper createUnmapper() {
+        try {
+            // java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (Exception ignored) {
+            // fall through
+        }
+        try {
+            // java 8
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> clean.invoke(cleaner.invoke(buffer));
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Unmapper {
+        void unmap(ByteBuffer buffer) throws Exception;
+    }
+
 }
@@ -0,0 +1,310 @@
+package io.github.supervate.vlog.common;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 预分配的无锁有界环形队列
+ * <p>
+ * 生产者通过CAS抢占序号(Disruptor风格),写入元素后发布该槽位的序号;消费者按序号读取,
+ * 入队出队都不加锁也不分配节点.poll同样通过CAS抢占,支持多线程并发(用于丢弃最旧事件等场景),
+ * 但阻塞的{@link #take()}只允许一个消费线程.
+ * <p>
+ * 等待行为由{@link WaitStrategy}决定,BLOCKING策略下生产者只有在消费者确实park时才会unpark它.
+ * <p>
+ * 注意: 不支持迭代器,size为近似值.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private final int capacity;
+    private final int mask;
+    private final Object[] buffer;
+    /**
+     * 槽位序号: 等于入队序号时可写,等于入队序号+1时可读,读取后置为入队序号+capacity(下一圈可写).
+     */
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final WaitStrategy waitStrategy;
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+    /**
+     * 请求阻塞中的消费者提前返回
+     */
+    private volatile boolean wakeUpRequested;
+
+    public RingBufferQueue(int capacity) {
+        this(capacity, WaitStrategy.BLOCKING);
+    }
+
+    /**
+     * @param capacity     容量,会向上取整为2的幂
+     * @param waitStrategy 等待策略
+     */
+    public RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+        this.capacity = ceilingPowerOfTwo(capacity);
+        this.mask = this.capacity - 1;
+        this.buffer = new Object[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.waitStrategy = Objects.requireNonNull(waitStrategy);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        if (value > (1 << 30)) {
+            return 1 << 30;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = e;
+                    // volatile写,保证与之后读取consumerParked的顺序
+                    sequences.set(index, position + 1);
+                    signalConsumer();
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // full
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        int counter = 0;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            waitWhenFull(counter++);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = 0;
+        while (!offer(e)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            waitWhenFull(counter++);
+        }
+        return true;
+    }
+
+    /**
+     * 队列满时生产者不会被消费者唤醒,BLOCKING策略退化为短暂的parkNanos轮询
+     */
+    private void waitWhenFull(int counter) {
+        if (waitStrategy.backOff(counter)) {
+            LockSupport.parkNanos(WaitStrategy.SLEEP_NANOS);
+        }
+    }
+
+    private void signalConsumer() {
+        if (consumerParked) {
+            Thread thread = consumer;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E e = (E) buffer[index];
+                    buffer[index] = null;
+                    sequences.lazySet(index, position + capacity);
+                    return e;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                // empty
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * 阻塞等待元素,仅允许一个消费线程调用.
+     * <p>
+     * 与{@link BlockingQueue#take()}不同: 被{@link #wakeUpConsumer()}唤醒且队列为空时返回null,
+     * 只有线程被中断时才抛出{@link InterruptedException}.
+     *
+     * @return 队首元素,被唤醒时为null
+     */
+    @Override
+    public E take() throws InterruptedException {
+        return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 阻塞等待元素,仅允许一个消费线程调用.
+     */
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long timeoutNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + timeoutNanos;
+        int counter = 0;
+        E e;
+        while ((e = poll()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (wakeUpRequested) {
+                wakeUpRequested = false;
+                return null;
+            }
+            long remaining = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            if (waitStrategy.backOff(counter++)) {
+                park(remaining);
+            }
+        }
+        return e;
+    }
+
+    /**
+     * 唤醒在{@link #poll(long, TimeUnit)}或{@link #take()}中等待的消费者,使其(队列为空时)返回null;
+     * 若消费者当前未在等待,则下一次等待立即返回.
+     */
+    public void wakeUpConsumer() {
+        wakeUpRequested = true;
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void park(long remainingNanos) {
+        consumer = Thread.currentThread();
+        consumerParked = true;
+        try {
+            // 标记park后再次检查,避免错过生产者的唤醒
+            if (isEmpty() && !wakeUpRequested) {
+                if (remainingNanos == Long.MAX_VALUE) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, remainingNanos);
+                }
+            }
+        } finally {
+            consumerParked = false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) == position + 1) {
+            return (E) buffer[index];
+        }
+        return null;
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        long position = head.get();
+        return sequences.get((int) position & mask) != position + 1;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return "RingBufferQueue[capacity=" + capacity + ", size=" + size() + ", waitStrategy=" + waitStrategy + "]";
+    }
+
+    /**
+     * 不支持迭代
+     */
+    @Override
+    public Iterator<E> iterator() {
+        throw new UnsupportedOperationException("RingBufferQueue does not support iterator.");
+    }
+
+}
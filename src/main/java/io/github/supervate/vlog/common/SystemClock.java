@@ -0,0 +1,22 @@
+package io.github.supervate.vlog.common;
+
+/**
+ * 系统时钟,每次调用{@link System#currentTimeMillis()}.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class SystemClock implements Clock {
+
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {}
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+}
@@ -0,0 +1,184 @@
+package io.github.supervate.vlog.common;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 文本编码器,将字符序列直接编码进ByteBuffer,不产生中间的String/byte[].
+ * <p>
+ * 纯ASCII文本逐字节写入(快速路径);含非ASCII字符时使用复用的CharsetEncoder.
+ * UTF-8下可不经编码直接计算出编码后的长度,便于调用方预先判断缓冲空间/文件滚动.
+ * <p>
+ * 注意: 非线程安全,每个输出端(消费线程)持有一个实例.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class TextEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+    private final boolean utf8;
+    /**
+     * ASCII字符是否按单字节原样编码
+     */
+    private final boolean asciiCompatible;
+    private CharBuffer charBuffer = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private ByteBuffer scratch = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    public TextEncoder() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public TextEncoder(Charset charset) {
+        this.charset = charset;
+        this.encoder = charset
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.asciiCompatible = utf8
+            || StandardCharsets.US_ASCII.equals(charset)
+            || StandardCharsets.ISO_8859_1.equals(charset);
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return 编码后的字节数
+     */
+    public int encodedLength(CharSequence text) {
+        int length = text.length();
+        if (asciiCompatible) {
+            int i = 0;
+            while (i < length && text.charAt(i) < 0x80) {
+                i++;
+            }
+            if (i == length) {
+                return length;
+            }
+            if (utf8) {
+                return i + utf8Length(text, i);
+            }
+        }
+        return encode(text).remaining();
+    }
+
+    /**
+     * 按UTF-8计算从from开始的编码长度,不成对的代理字符按替换字符'?'计算
+     */
+    private static int utf8Length(CharSequence text, int from) {
+        int length = text.length();
+        int bytes = 0;
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 将文本编码进out,调用方需保证out剩余空间不小于{@link #encodedLength(CharSequence)}.
+     */
+    public void encode(CharSequence text, ByteBuffer out) {
+        int length = text.length();
+        int i = 0;
+        if (asciiCompatible) {
+            if (out.hasArray()) {
+                byte[] array = out.array();
+                int offset = out.arrayOffset() + out.position();
+                int start = offset;
+                char c;
+                while (i < length && (c = text.charAt(i)) < 0x80) {
+                    array[offset++] = (byte) c;
+                    i++;
+                }
+                out.position(out.position() + offset - start);
+            } else {
+                char c;
+                while (i < length && (c = text.charAt(i)) < 0x80) {
+                    out.put((byte) c);
+                    i++;
+                }
+            }
+            if (i == length) {
+                return;
+            }
+        }
+        encodeSlow(text, i, out);
+    }
+
+    private void encodeSlow(CharSequence text, int from, ByteBuffer out) {
+        CharBuffer chars = fill(text, from);
+        encoder.reset();
+        CoderResult result = encoder.encode(chars, out, true);
+        if (result.isUnderflow()) {
+            result = encoder.flush(out);
+        }
+        if (result.isOverflow()) {
+            throw new IllegalArgumentException("insufficient space in output buffer.");
+        }
+    }
+
+    /**
+     * 将文本编码进内部复用的缓冲
+     *
+     * @return 处于读模式的缓冲,在下一次调用前有效
+     */
+    public ByteBuffer encode(CharSequence text) {
+        int maxLength = (int) Math.min(Integer.MAX_VALUE, (long) (text.length() * (double) encoder.maxBytesPerChar()) + 1);
+        if (scratch.capacity() < maxLength) {
+            scratch = ByteBuffer.allocate(Math.max(maxLength, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        encode(text, scratch);
+        scratch.flip();
+        return scratch;
+    }
+
+    /**
+     * 将from之后的字符复制进复用的CharBuffer
+     */
+    private CharBuffer fill(CharSequence text, int from) {
+        int length = text.length() - from;
+        if (charBuffer.capacity() < length) {
+            charBuffer = CharBuffer.allocate(Math.max(length, charBuffer.capacity() * 2));
+        }
+        charBuffer.clear();
+        char[] array = charBuffer.array();
+        if (text instanceof String) {
+            ((String) text).getChars(from, text.length(), array, 0);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(from, text.length(), array, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                array[i] = text.charAt(from + i);
+            }
+        }
+        charBuffer.limit(length);
+        return charBuffer;
+    }
+
+}
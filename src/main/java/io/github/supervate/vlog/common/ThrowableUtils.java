@@ -1,8 +1,5 @@
 package io.github.supervate.vlog.common;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import static io.github.supervate.vlog.common.Constants.CAUSED_BY;
 
 /**
@@ -15,46 +12,90 @@ import static io.github.supervate.vlog.common.Constants.CAUSED_BY;
  */
 public class ThrowableUtils {
 
+    private static final String[] NO_FILTER = new String[0];
+    private static final int MAX_CAUSE_DEPTH = 64;
+
     private ThrowableUtils() {
     }
 
     public static String throwableToStr(Throwable t) {
-        List<String> strList = new LinkedList<>();
-        extract(strList, t, null);
-        return String.join(System.lineSeparator(), strList);
+        StringBuilder sb = new StringBuilder(1024);
+        appendThrowable(t, sb, 0, NO_FILTER);
+        return sb.toString();
     }
 
-    private static void extract(List<String> strList, Throwable t, StackTraceElement[] parentSTE) {
-
-        StackTraceElement[] ste = t.getStackTrace();
-        final int numberOfcommonFrames = findNumberOfCommonFrames(ste, parentSTE);
-
-        strList.add(formatFirstLine(t, parentSTE));
-        for (int i = 0; i < (ste.length - numberOfcommonFrames); i++) {
-            strList.add("\tat " + ste[i].toString());
+    /**
+     * 将异常及其cause链的堆栈直接追加到sb,行间以系统换行分隔,末尾不换行.
+     *
+     * @param maxDepth        每个异常最多输出的帧数,<=0不限制
+     * @param filteredPackages 类名以这些前缀开头的帧不输出,连续的被过滤帧合并为一行计数
+     */
+    public static void appendThrowable(Throwable t, StringBuilder sb, int maxDepth, String[] filteredPackages) {
+        if (filteredPackages == null) {
+            filteredPackages = NO_FILTER;
         }
+        String lineSeparator = System.lineSeparator();
+        StackTraceElement[] parentSTE = null;
+        // 防止cause链成环
+        for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            StackTraceElement[] ste = t.getStackTrace();
+            final int numberOfcommonFrames = findNumberOfCommonFrames(ste, parentSTE);
+            if (parentSTE != null) {
+                sb.append(lineSeparator);
+            }
+            appendFirstLine(t, parentSTE, sb);
+            int frames = ste.length - numberOfcommonFrames;
+            int printed = 0;
+            int filtered = 0;
+            int i = 0;
+            for (; i < frames; i++) {
+                if (maxDepth > 0 && printed >= maxDepth) {
+                    break;
+                }
+                if (isFiltered(ste[i], filteredPackages)) {
+                    filtered++;
+                    continue;
+                }
+                appendFiltered(filtered, sb, lineSeparator);
+                filtered = 0;
+                sb.append(lineSeparator).append("\tat ").append(ste[i].toString());
+                printed++;
+            }
+            appendFiltered(filtered, sb, lineSeparator);
+            if (i < frames) {
+                sb.append(lineSeparator).append("\t... ").append(frames - i).append(" more frames omitted");
+            }
+            if (numberOfcommonFrames != 0) {
+                sb.append(lineSeparator).append("\t... ").append(numberOfcommonFrames).append(" common frames omitted");
+            }
+            parentSTE = ste;
+            t = t.getCause();
+        }
+    }
 
-        if (numberOfcommonFrames != 0) {
-            strList.add("\t... " + numberOfcommonFrames + " common frames omitted");
+    private static void appendFiltered(int filtered, StringBuilder sb, String lineSeparator) {
+        if (filtered > 0) {
+            sb.append(lineSeparator).append("\t... ").append(filtered).append(" filtered frames");
         }
+    }
 
-        Throwable cause = t.getCause();
-        if (cause != null) {
-            ThrowableUtils.extract(strList, cause, ste);
+    private static boolean isFiltered(StackTraceElement element, String[] filteredPackages) {
+        for (String filteredPackage : filteredPackages) {
+            if (element.getClassName().startsWith(filteredPackage)) {
+                return true;
+            }
         }
+        return false;
     }
 
-    private static String formatFirstLine(Throwable t, StackTraceElement[] parentSTE) {
-        String prefix = "";
+    private static void appendFirstLine(Throwable t, StackTraceElement[] parentSTE, StringBuilder sb) {
         if (parentSTE != null) {
-            prefix = CAUSED_BY;
+            sb.append(CAUSED_BY);
         }
-
-        String result = prefix + t.getClass().getName();
+        sb.append(t.getClass().getName());
         if (t.getMessage() != null) {
-            result += ": " + t.getMessage();
+            sb.append(": ").append(t.getMessage());
         }
-        return result;
     }
 
     private static int findNumberOfCommonFrames(StackTraceElement[] ste, StackTraceElement[] parentSTE) {
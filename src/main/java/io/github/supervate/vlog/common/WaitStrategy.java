@@ -0,0 +1,55 @@
+package io.github.supervate.vlog.common;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 环形队列消费者(以及队列满时生产者)的等待策略
+ * <p>
+ * <li>BLOCKING: 短暂自旋后park,生产者仅在消费者确实park时才unpark,CPU占用最低,延迟略高.
+ * <li>SLEEPING: 自旋、让出后以极短的parkNanos轮询,不需要生产者唤醒.
+ * <li>YIELDING: 自旋后持续Thread.yield,延迟低,空闲时占用一个核.
+ * <li>BUSY_SPIN: 持续自旋,延迟最低,空闲时占满一个核,仅适合独占核心的场景.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ * @see RingBufferQueue
+ */
+public enum WaitStrategy {
+
+    BLOCKING,
+    SLEEPING,
+    YIELDING,
+    BUSY_SPIN;
+
+    static final int SPIN_TRIES = 100;
+    static final int YIELD_TRIES = 100;
+    static final long SLEEP_NANOS = 100_000;
+
+    /**
+     * 未就绪时的一次退避
+     *
+     * @param counter 已经退避的次数
+     * @return 是否到达需要park等待唤醒的阶段(仅BLOCKING会返回true)
+     */
+    boolean backOff(int counter) {
+        if (this == BUSY_SPIN || counter < SPIN_TRIES) {
+            return false;
+        }
+        if (this == YIELDING || counter < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+            return false;
+        }
+        if (this == SLEEPING) {
+            LockSupport.parkNanos(SLEEP_NANOS);
+            return false;
+        }
+        return true;
+    }
+
+    public static WaitStrategy of(String name) {
+        return WaitStrategy.valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+
+}
@@ -0,0 +1,47 @@
+package io.github.supervate.vlog.event;
+
+import java.util.function.Supplier;
+
+/**
+ * 延迟求值的日志参数
+ * <p>
+ * 在格式化时(通常是异步appender的消费线程)才会调用supplier求值,且只求值一次,多个appender共享结果.
+ * 仅当supplier捕获的状态可以被其他线程安全读取时才应使用.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class DeferredArgument {
+
+    private final Supplier<?> supplier;
+    private volatile boolean resolved;
+    private Object value;
+
+    public DeferredArgument(Supplier<?> supplier) {
+        this.supplier = supplier;
+    }
+
+    public Object get() {
+        if (!resolved) {
+            synchronized (this) {
+                if (!resolved) {
+                    try {
+                        value = supplier == null ? null : supplier.get();
+                    } catch (Exception e) {
+                        value = "[deferred argument failed: " + e + "]";
+                    }
+                    resolved = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.github.supervate.vlog.event;
+
+/**
+ * 结构化的键值参数
+ * <p>
+ * 作为普通日志参数传入,如: {@code logger.info("order {} created", KeyValue.of("orderId", id))}.
+ * 行格式中渲染为{@code key=value};JSON格式中额外输出为同名字段,数值/布尔值保持原类型.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class KeyValue {
+
+    private final String key;
+    private final Object value;
+
+    private KeyValue(String key, Object value) {
+        this.key = key;
+        this.value = value;
+    }
+
+    public static KeyValue of(String key, Object value) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("key must not be empty.");
+        }
+        return new KeyValue(key, value);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + value;
+    }
+
+}
@@ -13,12 +13,25 @@ import io.github.supervate.vlog.Logger;
  */
 public interface LogEvent {
 
+    /**
+     * 事件未设置时间
+     */
+    long NO_EVENT_TIME = Long.MIN_VALUE;
+
     Level getLevel();
 
     String getThreadName();
 
     Long getEventTime();
 
+    /**
+     * 不装箱的事件时间,未设置时返回{@link #NO_EVENT_TIME}.
+     */
+    default long getEventTimeMillis() {
+        Long eventTime = getEventTime();
+        return eventTime == null ? NO_EVENT_TIME : eventTime;
+    }
+
     Logger getLogger();
 
     Throwable getThrowable();
@@ -27,4 +40,12 @@ public interface LogEvent {
 
     Object[] getArguments();
 
+    /**
+     * 可复用的事件参数数组是预分配的,长度可能大于实际参数个数,以本方法为准.
+     */
+    default int getArgumentCount() {
+        Object[] arguments = getArguments();
+        return arguments == null ? 0 : arguments.length;
+    }
+
 }
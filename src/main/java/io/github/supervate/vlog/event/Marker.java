@@ -0,0 +1,39 @@
+package io.github.supervate.vlog.event;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 日志标记
+ * <p>
+ * 同名标记只有一个实例,过滤时按引用比较.目前仅用于在构建事件之前过滤(见{@code MarkerFilter}),通过{@code LogBuilder#marker}传入.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class Marker {
+
+    private static final ConcurrentHashMap<String, Marker> MARKERS = new ConcurrentHashMap<>();
+
+    private final String name;
+
+    private Marker(String name) {
+        this.name = name;
+    }
+
+    public static Marker get(String name) {
+        Marker marker = MARKERS.get(name);
+        return marker != null ? marker : MARKERS.computeIfAbsent(name, Marker::new);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,217 @@
+package io.github.supervate.vlog.event;
+
+import io.github.supervate.vlog.Logger;
+
+/**
+ * 可复用的日志事件,用于无垃圾(garbage-free)模式.
+ * <p>
+ * 参数会被复制进预分配的数组,{@link #getArguments()}返回的数组长度可能大于实际参数个数,
+ * 请配合{@link #getArgumentCount()}使用.
+ * <p>
+ * 注意: 事件会被生产线程反复填充,只在append调用期间有效;跨线程(如异步appender)必须先复制.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class MutableLogEvent implements LogEvent {
+
+    private Level level;
+    private String threadName;
+    private long eventTime;
+    private Logger logger;
+    private String message;
+    private Object[] arguments;
+    /**
+     * 按参数位置复用的基本类型参数,首次使用时分配
+     */
+    private PrimitiveArgument[] primitiveArguments;
+    private int argumentCount;
+    private Throwable throwable;
+
+    public MutableLogEvent(int argumentCapacity) {
+        this.arguments = new Object[Math.max(argumentCapacity, 1)];
+    }
+
+    public MutableLogEvent set(Level level, String threadName, long eventTime, Logger logger, String message) {
+        this.level = level;
+        this.threadName = threadName;
+        this.eventTime = eventTime;
+        this.logger = logger;
+        this.message = message;
+        return this;
+    }
+
+    public void setArgument(int index, Object argument) {
+        ensureArgumentCapacity(index + 1);
+        arguments[index] = argument;
+        argumentCount = Math.max(argumentCount, index + 1);
+    }
+
+    /**
+     * 以不装箱的方式设置参数
+     */
+    public void setArgument(int index, long argument) {
+        setArgument(index, primitiveArgument(index).setLong(argument));
+    }
+
+    public void setArgument(int index, double argument) {
+        setArgument(index, primitiveArgument(index).setDouble(argument));
+    }
+
+    public void setArgument(int index, float argument) {
+        setArgument(index, primitiveArgument(index).setFloat(argument));
+    }
+
+    private PrimitiveArgument primitiveArgument(int index) {
+        if (primitiveArguments == null || index >= primitiveArguments.length) {
+            PrimitiveArgument[] newArguments = new PrimitiveArgument[Math.max(index + 1, arguments.length)];
+            if (primitiveArguments != null) {
+                System.arraycopy(primitiveArguments, 0, newArguments, 0, primitiveArguments.length);
+            }
+            primitiveArguments = newArguments;
+        }
+        PrimitiveArgument argument = primitiveArguments[index];
+        if (argument == null) {
+            argument = new PrimitiveArgument();
+            primitiveArguments[index] = argument;
+        }
+        return argument;
+    }
+
+    public void setArguments(Object[] args) {
+        int length = args == null ? 0 : args.length;
+        ensureArgumentCapacity(length);
+        for (int i = 0; i < length; i++) {
+            arguments[i] = args[i];
+        }
+        for (int i = length; i < argumentCount; i++) {
+            arguments[i] = null;
+        }
+        argumentCount = length;
+    }
+
+    /**
+     * 与{@code Logger.buildLogEvent}规则一致: 最后一个参数为异常时作为事件的异常,多于一个参数时从参数中移除.
+     */
+    public void resolveThrowable() {
+        if (argumentCount > 0 && arguments[argumentCount - 1] instanceof Throwable) {
+            throwable = (Throwable) arguments[argumentCount - 1];
+            if (argumentCount > 1) {
+                arguments[--argumentCount] = null;
+            }
+        }
+    }
+
+    public void setThrowable(Throwable throwable) {
+        this.throwable = throwable;
+    }
+
+    /**
+     * 复制另一个事件的内容,参数复制进本事件的预分配数组.
+     */
+    public void copyFrom(LogEvent event) {
+        long time = event.getEventTimeMillis();
+        set(event.getLevel(), event.getThreadName(), time == NO_EVENT_TIME ? 0 : time, event.getLogger(), event.getMessage());
+        int count = event.getArgumentCount();
+        ensureArgumentCapacity(count);
+        Object[] sourceArguments = event.getArguments();
+        for (int i = 0; i < count; i++) {
+            Object argument = sourceArguments[i];
+            // 基本类型参数复制值,源事件的实例会被复用
+            arguments[i] = argument instanceof PrimitiveArgument
+                ? primitiveArgument(i).copyFrom((PrimitiveArgument) argument)
+                : argument;
+        }
+        for (int i = count; i < argumentCount; i++) {
+            arguments[i] = null;
+        }
+        argumentCount = count;
+        throwable = event.getThrowable();
+    }
+
+    /**
+     * @return 不可变的事件副本
+     */
+    public DefaultLogEvent toImmutable() {
+        Object[] args = new Object[argumentCount];
+        for (int i = 0; i < argumentCount; i++) {
+            Object argument = arguments[i];
+            args[i] = argument instanceof PrimitiveArgument
+                ? new PrimitiveArgument().copyFrom((PrimitiveArgument) argument)
+                : argument;
+        }
+        return new DefaultLogEvent(level, threadName, eventTime, logger, message, args, throwable);
+    }
+
+    /**
+     * 清空引用,避免复用期间持有用户对象
+     */
+    public void clear() {
+        level = null;
+        threadName = null;
+        eventTime = 0;
+        logger = null;
+        message = null;
+        for (int i = 0; i < argumentCount; i++) {
+            arguments[i] = null;
+        }
+        argumentCount = 0;
+        throwable = null;
+    }
+
+    private void ensureArgumentCapacity(int capacity) {
+        if (capacity > arguments.length) {
+            Object[] newArguments = new Object[Math.max(capacity, arguments.length << 1)];
+            System.arraycopy(arguments, 0, newArguments, 0, argumentCount);
+            arguments = newArguments;
+        }
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public Long getEventTime() {
+        return eventTime;
+    }
+
+    @Override
+    public long getEventTimeMillis() {
+        return eventTime;
+    }
+
+    @Override
+    public Logger getLogger() {
+        return logger;
+    }
+
+    @Override
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public Object[] getArguments() {
+        return arguments;
+    }
+
+    @Override
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+}
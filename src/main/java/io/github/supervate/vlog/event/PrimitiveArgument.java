@@ -0,0 +1,105 @@
+package io.github.supervate.vlog.event;
+
+/**
+ * 不装箱的基本类型日志参数
+ * <p>
+ * 由{@link MutableLogEvent}按参数位置预分配并复用,值以原始类型保存,格式化时直接追加到输出,不产生字符串.
+ * 事件在线程间传递时(复制进异步事件槽或转为不可变事件)会复制值,不会共享同一个实例.
+ * 按类型与值判断相等,供重复消息抑制比较参数.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class PrimitiveArgument {
+
+    private static final int LONG = 0;
+    private static final int DOUBLE = 1;
+    private static final int FLOAT = 2;
+
+    private int type;
+    private long longValue;
+    private double doubleValue;
+
+    public PrimitiveArgument setLong(long value) {
+        this.type = LONG;
+        this.longValue = value;
+        return this;
+    }
+
+    public PrimitiveArgument setDouble(double value) {
+        this.type = DOUBLE;
+        this.doubleValue = value;
+        return this;
+    }
+
+    public PrimitiveArgument setFloat(float value) {
+        this.type = FLOAT;
+        this.doubleValue = value;
+        return this;
+    }
+
+    public PrimitiveArgument copyFrom(PrimitiveArgument other) {
+        this.type = other.type;
+        this.longValue = other.longValue;
+        this.doubleValue = other.doubleValue;
+        return this;
+    }
+
+    public boolean isIntegral() {
+        return type == LONG;
+    }
+
+    public long longValue() {
+        return type == LONG ? longValue : (long) doubleValue;
+    }
+
+    public double doubleValue() {
+        return type == LONG ? longValue : doubleValue;
+    }
+
+    /**
+     * 直接追加数值,与对应装箱类型的toString结果一致
+     */
+    public void appendTo(StringBuilder sb) {
+        switch (type) {
+            case DOUBLE:
+                sb.append(doubleValue);
+                break;
+            case FLOAT:
+                sb.append((float) doubleValue);
+                break;
+            default:
+                sb.append(longValue);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PrimitiveArgument)) {
+            return false;
+        }
+        PrimitiveArgument that = (PrimitiveArgument) o;
+        // 复用的实例只有当前类型对应的字段有效
+        return type == that.type && (type == LONG
+                                     ? longValue == that.longValue
+                                     : Double.compare(doubleValue, that.doubleValue) == 0);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type + (type == LONG ? Long.hashCode(longValue) : Double.hashCode(doubleValue));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb);
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,39 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+/**
+ * 按条件是否满足返回onMatch/onMismatch的过滤器
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public abstract class AbstractMatchFilter implements Filter {
+
+    private final FilterReply onMatch;
+    private final FilterReply onMismatch;
+
+    protected AbstractMatchFilter(FilterReply onMatch, FilterReply onMismatch) {
+        this.onMatch = onMatch == null ? FilterReply.NEUTRAL : onMatch;
+        this.onMismatch = onMismatch == null ? FilterReply.NEUTRAL : onMismatch;
+    }
+
+    protected abstract boolean matches(String loggerName, Level level, Marker marker, String template);
+
+    @Override
+    public FilterReply decide(String loggerName, Level level, Marker marker, String template) {
+        return matches(loggerName, level, marker, template) ? onMatch : onMismatch;
+    }
+
+    public FilterReply getOnMatch() {
+        return onMatch;
+    }
+
+    public FilterReply getOnMismatch() {
+        return onMismatch;
+    }
+
+}
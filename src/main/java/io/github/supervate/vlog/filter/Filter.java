@@ -0,0 +1,35 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+/**
+ * 构建事件之前的过滤器
+ * <p>
+ * 在{@code Logger}中、分配事件与参数数组之前判断,只能看到logger名称、级别、标记与消息模板,看不到参数.
+ * 实现需线程安全且不应分配对象.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public interface Filter {
+
+    /**
+     * @param loggerName logger名称
+     * @param level      级别
+     * @param marker     标记,未指定时为null
+     * @param template   消息模板,未知(如消息supplier或{@code isXxxEnabled()})时为null
+     */
+    FilterReply decide(String loggerName, Level level, Marker marker, String template);
+
+    /**
+     * 结果是否只取决于logger名称与级别.
+     * 为true时,结果在级别或过滤器变更时按logger计算并缓存,打印时不再调用(调用时marker与template为null).
+     */
+    default boolean isStatic() {
+        return false;
+    }
+
+}
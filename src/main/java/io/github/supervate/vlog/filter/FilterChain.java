@@ -0,0 +1,100 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 过滤器链,按顺序判断,第一个非{@link FilterReply#NEUTRAL}的结果生效;都为NEUTRAL时按logger级别判断.
+ * <p>
+ * 第一个动态过滤器之前的静态过滤器(见{@link Filter#isStatic()})与logger级别一起按logger预先计算为级别掩码,
+ * 打印时只读取一次掩码;动态过滤器从第一个动态过滤器开始在每次调用时判断.
+ * <p>
+ * 掩码的低{@link #DYNAMIC_SHIFT}位表示各级别是否启用,其上的同样位置表示该级别是否需要在调用时判断动态过滤器.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class FilterChain {
+
+    public static final int DYNAMIC_SHIFT = 8;
+    public static final FilterChain EMPTY = new FilterChain(new Filter[0]);
+    private static final Level[] LEVELS = Level.values();
+
+    private final Filter[] filters;
+    /**
+     * 第一个动态过滤器的位置,没有时等于过滤器个数
+     */
+    private final int firstDynamic;
+
+    private FilterChain(Filter[] filters) {
+        this.filters = filters;
+        int index = 0;
+        while (index < filters.length && filters[index].isStatic()) {
+            index++;
+        }
+        this.firstDynamic = index;
+    }
+
+    public static FilterChain of(Filter... filters) {
+        return filters.length == 0 ? EMPTY : new FilterChain(filters.clone());
+    }
+
+    public static FilterChain of(List<? extends Filter> filters) {
+        return of(filters.toArray(new Filter[0]));
+    }
+
+    public boolean isEmpty() {
+        return filters.length == 0;
+    }
+
+    public List<Filter> getFilters() {
+        return Collections.unmodifiableList(Arrays.asList(filters));
+    }
+
+    /**
+     * @param loggerName     logger名称
+     * @param effectiveLevel logger生效的级别
+     * @return 级别掩码
+     */
+    public int levelMask(String loggerName, Level effectiveLevel) {
+        int mask = 0;
+        for (Level level : LEVELS) {
+            int bit = 1 << level.ordinal();
+            FilterReply reply = FilterReply.NEUTRAL;
+            for (int i = 0; i < firstDynamic && reply == FilterReply.NEUTRAL; i++) {
+                reply = filters[i].decide(loggerName, level, null, null);
+            }
+            if (reply == FilterReply.ACCEPT) {
+                mask |= bit;
+            } else if (reply == FilterReply.NEUTRAL) {
+                if (level.ordinal() >= effectiveLevel.ordinal()) {
+                    mask |= bit;
+                }
+                if (firstDynamic < filters.length) {
+                    mask |= bit << DYNAMIC_SHIFT;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 判断动态部分(从第一个动态过滤器开始),仅对掩码中标记为需要判断的级别调用
+     */
+    public FilterReply decide(String loggerName, Level level, Marker marker, String template) {
+        for (int i = firstDynamic; i < filters.length; i++) {
+            FilterReply reply = filters[i].decide(loggerName, level, marker, template);
+            if (reply != FilterReply.NEUTRAL) {
+                return reply;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+}
@@ -0,0 +1,24 @@
+package io.github.supervate.vlog.filter;
+
+/**
+ * 过滤器的判断结果
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public enum FilterReply {
+    /**
+     * 直接放行,不再判断后续过滤器与logger级别
+     */
+    ACCEPT,
+    /**
+     * 直接丢弃
+     */
+    DENY,
+    /**
+     * 无结论,交由后续过滤器,都无结论时按logger级别判断
+     */
+    NEUTRAL
+}
@@ -0,0 +1,44 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+/**
+ * 按级别阈值过滤,级别不低于阈值时视为满足
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class LevelFilter extends AbstractMatchFilter {
+
+    private final Level threshold;
+
+    public LevelFilter(Level threshold, FilterReply onMatch, FilterReply onMismatch) {
+        super(onMatch, onMismatch);
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return 丢弃低于阈值的日志,其余交由后续判断
+     */
+    public static LevelFilter denyBelow(Level threshold) {
+        return new LevelFilter(threshold, FilterReply.NEUTRAL, FilterReply.DENY);
+    }
+
+    @Override
+    protected boolean matches(String loggerName, Level level, Marker marker, String template) {
+        return level.ordinal() >= threshold.ordinal();
+    }
+
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
+    public Level getThreshold() {
+        return threshold;
+    }
+
+}
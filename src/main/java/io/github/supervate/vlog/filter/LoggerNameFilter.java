@@ -0,0 +1,46 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+/**
+ * 按logger名称前缀过滤,与级别配置一样,前缀匹配名称本身及所有以{@code prefix + "."}开头的logger
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class LoggerNameFilter extends AbstractMatchFilter {
+
+    private final String[] prefixes;
+
+    public LoggerNameFilter(String[] prefixes, FilterReply onMatch, FilterReply onMismatch) {
+        super(onMatch, onMismatch);
+        this.prefixes = prefixes.clone();
+    }
+
+    /**
+     * @return 丢弃指定前缀下的所有日志,其余交由后续判断
+     */
+    public static LoggerNameFilter deny(String... prefixes) {
+        return new LoggerNameFilter(prefixes, FilterReply.DENY, FilterReply.NEUTRAL);
+    }
+
+    @Override
+    protected boolean matches(String loggerName, Level level, Marker marker, String template) {
+        for (String prefix : prefixes) {
+            if (loggerName.startsWith(prefix)
+                && (loggerName.length() == prefix.length() || loggerName.charAt(prefix.length()) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isStatic() {
+        return true;
+    }
+
+}
@@ -0,0 +1,40 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+/**
+ * 按标记过滤,调用时带有任一指定标记视为满足
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class MarkerFilter extends AbstractMatchFilter {
+
+    private final Marker[] markers;
+
+    public MarkerFilter(Marker[] markers, FilterReply onMatch, FilterReply onMismatch) {
+        super(onMatch, onMismatch);
+        this.markers = markers.clone();
+    }
+
+    public MarkerFilter(Marker marker, FilterReply onMatch, FilterReply onMismatch) {
+        this(new Marker[]{ marker }, onMatch, onMismatch);
+    }
+
+    @Override
+    protected boolean matches(String loggerName, Level level, Marker marker, String template) {
+        if (marker == null) {
+            return false;
+        }
+        for (Marker candidate : markers) {
+            if (candidate == marker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,36 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.Marker;
+
+/**
+ * 按自定义条件过滤
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class PredicateFilter extends AbstractMatchFilter {
+
+    /**
+     * 过滤条件,template未知时为null
+     */
+    @FunctionalInterface
+    public interface Condition {
+        boolean test(String loggerName, Level level, String template);
+    }
+
+    private final Condition condition;
+
+    public PredicateFilter(Condition condition, FilterReply onMatch, FilterReply onMismatch) {
+        super(onMatch, onMismatch);
+        this.condition = condition;
+    }
+
+    @Override
+    protected boolean matches(String loggerName, Level level, Marker marker, String template) {
+        return condition.test(loggerName, level, template);
+    }
+
+}
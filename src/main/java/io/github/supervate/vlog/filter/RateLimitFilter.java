@@ -0,0 +1,98 @@
+package io.github.supervate.vlog.filter;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按调用点(消息模板)或按logger限流
+ * <p>
+ * 每个键持有一个{@link RateLimiter},在构建日志事件之前判断;已存在的键查找时不分配对象.
+ * 键的数量有上限,超出后新出现的键共用一个溢出桶,动态拼接的消息不会让键无限增长.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class RateLimitFilter {
+
+    public static final int DEFAULT_MAX_KEYS = 10_000;
+
+    /**
+     * 限流的粒度
+     */
+    public enum Key {
+        /**
+         * 每个消息模板(调用点)一个令牌桶;没有模板时(如消息supplier)按logger
+         */
+        TEMPLATE,
+        /**
+         * 每个logger一个令牌桶
+         */
+        LOGGER;
+
+        public static Key of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final double permitsPerSecond;
+    private final int burst;
+    private final Key key;
+    private final int maxKeys;
+    private final ConcurrentHashMap<Object, RateLimiter> limiters = new ConcurrentHashMap<>();
+    private final RateLimiter overflowLimiter;
+    private final LongAdder denied = new LongAdder();
+
+    public RateLimitFilter(double permitsPerSecond, int burst, Key key) {
+        this(permitsPerSecond, burst, key, DEFAULT_MAX_KEYS);
+    }
+
+    public RateLimitFilter(double permitsPerSecond, int burst, Key key, int maxKeys) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.key = key == null ? Key.TEMPLATE : key;
+        this.maxKeys = maxKeys;
+        this.overflowLimiter = new RateLimiter(permitsPerSecond, burst);
+    }
+
+    /**
+     * @param logger   发起调用的logger(作为键时按实例区分)
+     * @param template 消息模板,可为null
+     * @return 是否放行
+     */
+    public boolean tryAcquire(Object logger, String template) {
+        Object limiterKey = key == Key.TEMPLATE && template != null ? template : logger;
+        RateLimiter limiter = limiters.get(limiterKey);
+        if (limiter == null) {
+            limiter = newLimiter(limiterKey);
+        }
+        if (limiter.tryAcquire()) {
+            return true;
+        }
+        denied.increment();
+        return false;
+    }
+
+    private RateLimiter newLimiter(Object limiterKey) {
+        if (limiters.size() >= maxKeys) {
+            return overflowLimiter;
+        }
+        RateLimiter limiter = new RateLimiter(permitsPerSecond, burst);
+        RateLimiter existing = limiters.putIfAbsent(limiterKey, limiter);
+        return existing == null ? limiter : existing;
+    }
+
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * @return 被限流丢弃的调用次数
+     */
+    public long getDeniedCount() {
+        return denied.sum();
+    }
+
+}
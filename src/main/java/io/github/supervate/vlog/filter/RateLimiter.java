@@ -0,0 +1,55 @@
+package io.github.supervate.vlog.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * <p>
+ * 以"理论到达时间"(GCRA)实现: 只保存下一个令牌可用的时间点,一次CAS完成取令牌,不分配对象也不加锁.
+ * 每秒补充permitsPerSecond个令牌,最多累积burst个.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class RateLimiter {
+
+    private final long intervalNanos;
+    /**
+     * 允许超前的时间,即burst-1个令牌的时长
+     */
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param permitsPerSecond 每秒令牌数,需大于0
+     * @param burst            最多累积的令牌数,不小于1
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive.");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (Math.max(burst, 1) - 1);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    boolean tryAcquire(long nowNanos) {
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long base = arrival == Long.MIN_VALUE || arrival - nowNanos < 0 ? nowNanos : arrival;
+            if (base - nowNanos > toleranceNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package io.github.supervate.vlog.filter;
+
+import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.PrimitiveArgument;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 连续重复消息抑制,每个logger一个实例
+ * <p>
+ * 默认级别、消息模板与参数(equals)都相同的连续调用视为重复({@link Match#MESSAGE}),需在构建事件之后判断,
+ * 并持有最近一条消息参数的引用(延迟求值的参数按引用比较,不会被视为重复);{@link Match#TEMPLATE}只比较级别与模板,可在构建事件之前判断.
+ * 超过允许的次数后不再输出;出现不同的消息或同一消息重复持续超过窗口时,调用方先输出{@code last message repeated N times}再输出当前消息.
+ * 重复停止后没有新的调用时,由{@link #flush(boolean)}在窗口到期或停止时汇报.
+ * <p>
+ * 重复时只做一次原子自增;消息变化时替换状态对象.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class RepeatSuppressor {
+
+    /**
+     * 判断重复的方式
+     */
+    public enum Match {
+        /**
+         * 级别、模板与参数都相同
+         */
+        MESSAGE,
+        /**
+         * 级别与模板相同,与参数无关(同一调用点不同参数的消息也视为重复)
+         */
+        TEMPLATE;
+
+        public static Match of(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * {@link #check}的结果: 丢弃本次调用
+     */
+    public static final long SUPPRESS = -1;
+    /**
+     * {@link #check}的结果: 放行,无需汇报
+     */
+    public static final long PASS = 0;
+    private static final int LEVEL_BITS = 3;
+    private static final Level[] LEVELS = Level.values();
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final int allowedRepeats;
+    private final long windowNanos;
+    private final Match match;
+    private final AtomicReference<State> state = new AtomicReference<>();
+
+    /**
+     * 按消息(模板与参数)判断重复
+     *
+     * @see #RepeatSuppressor(int, long, Match)
+     */
+    public RepeatSuppressor(int allowedRepeats, long windowMillis) {
+        this(allowedRepeats, windowMillis, Match.MESSAGE);
+    }
+
+    /**
+     * @param allowedRepeats 连续重复时仍然输出的次数
+     * @param windowMillis   同一消息重复持续超过该时长时汇报一次并重新计数,<=0不限制
+     * @param match          判断重复的方式
+     */
+    public RepeatSuppressor(int allowedRepeats, long windowMillis, Match match) {
+        this.allowedRepeats = Math.max(allowedRepeats, 0);
+        this.windowNanos = windowMillis <= 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.match = match == null ? Match.MESSAGE : match;
+    }
+
+    public Match getMatch() {
+        return match;
+    }
+
+    /**
+     * {@link Match#TEMPLATE}模式下在构建事件之前调用
+     *
+     * @see #check(Level, String, Object[], int)
+     */
+    public long check(Level level, String template) {
+        return check(level, template, null, 0);
+    }
+
+    /**
+     * @param args     消息参数,{@link Match#TEMPLATE}模式下忽略
+     * @param argCount 实际参数个数,可复用事件的参数数组长度可能大于它
+     * @return {@link #SUPPRESS}, {@link #PASS},或需要先汇报的被抑制次数与级别(见{@link #suppressedCount}/{@link #suppressedLevel})
+     */
+    public long check(Level level, String template, Object[] args, int argCount) {
+        while (true) {
+            State current = state.get();
+            if (current != null && current.matches(level, template, args, argCount)) {
+                long repeats = current.repeats.incrementAndGet();
+                if (repeats <= allowedRepeats) {
+                    return PASS;
+                }
+                if (windowNanos == 0 || System.nanoTime() - current.sinceNanos < windowNanos) {
+                    return SUPPRESS;
+                }
+                // 窗口到期,汇报后重新计数
+                if (state.compareAndSet(current, current.restart())) {
+                    return report(current, repeats - 1);
+                }
+                continue;
+            }
+            if (state.compareAndSet(current, newState(level, template, args, argCount))) {
+                return current == null ? PASS : report(current, current.repeats.get());
+            }
+        }
+    }
+
+    /**
+     * 汇报尚未输出的被抑制次数,用于重复停止后没有新调用的情况
+     *
+     * @param force 为true时(如停止前)总是汇报并清除状态,否则只在窗口到期后汇报并重新计数
+     * @return {@link #PASS}或需要汇报的被抑制次数与级别
+     */
+    public long flush(boolean force) {
+        while (true) {
+            State current = state.get();
+            if (current == null || current.repeats.get() <= allowedRepeats) {
+                return PASS;
+            }
+            if (!force && (windowNanos == 0 || System.nanoTime() - current.sinceNanos < windowNanos)) {
+                return PASS;
+            }
+            if (state.compareAndSet(current, force ? null : current.restart())) {
+                return report(current, current.repeats.get());
+            }
+        }
+    }
+
+    private State newState(Level level, String template, Object[] args, int argCount) {
+        if (match == Match.TEMPLATE || args == null || argCount <= 0) {
+            return new State(level, template, NO_ARGUMENTS);
+        }
+        Object[] copied = Arrays.copyOf(args, argCount);
+        for (int i = 0; i < argCount; i++) {
+            // 可复用事件的基本类型参数实例会被再次填充,保存值的副本
+            if (copied[i] instanceof PrimitiveArgument) {
+                copied[i] = new PrimitiveArgument().copyFrom((PrimitiveArgument) copied[i]);
+            }
+        }
+        return new State(level, template, copied);
+    }
+
+    private long report(State previous, long repeats) {
+        long suppressed = repeats - allowedRepeats;
+        if (suppressed <= 0) {
+            return PASS;
+        }
+        return suppressed << LEVEL_BITS | previous.level.ordinal();
+    }
+
+    public static long suppressedCount(long verdict) {
+        return verdict >>> LEVEL_BITS;
+    }
+
+    public static Level suppressedLevel(long verdict) {
+        return LEVELS[(int) (verdict & ((1 << LEVEL_BITS) - 1))];
+    }
+
+    private final class State {
+        private final Level level;
+        private final String template;
+        /**
+         * 参数副本,TEMPLATE模式下为空
+         */
+        private final Object[] args;
+        private final long sinceNanos = System.nanoTime();
+        private final AtomicLong repeats = new AtomicLong();
+
+        private State(Level level, String template, Object[] args) {
+            this.level = level;
+            this.template = template;
+            this.args = args;
+        }
+
+        private boolean matches(Level level, String template, Object[] args, int argCount) {
+            if (this.level != level || !Objects.equals(this.template, template)) {
+                return false;
+            }
+            if (match == Match.TEMPLATE) {
+                return true;
+            }
+            int count = args == null ? 0 : argCount;
+            if (this.args.length != count) {
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!Objects.equals(this.args[i], args[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 同一消息重新计数
+         */
+        private State restart() {
+            return new State(level, template, args);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package io.github.supervate.vlog.layout;
+
+/**
+ * 抽象layout,只需实现{@link #encode(Object, StringBuilder)},{@link #format(Object)}委托其实现
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public abstract class AbstractLayout<E> implements Layout<E> {
+
+    @Override
+    public String format(E event) {
+        StringBuilder sb = new StringBuilder();
+        encode(event, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public abstract void encode(E event, StringBuilder sb);
+
+}
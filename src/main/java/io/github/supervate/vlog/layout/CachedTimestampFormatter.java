@@ -0,0 +1,116 @@
+package io.github.supervate.vlog.layout;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 缓存的时间戳格式化器
+ * <p>
+ * 按秒缓存毫秒字段({@code SSS})之前与之后的渲染结果,同一秒内只需补上三位毫秒;
+ * 秒变化时才重新渲染,并重新读取系统时区,因此时区偏移变化(夏令时切换总在整秒)也会在下一秒生效.
+ * <p>
+ * 模式中不含{@code SSS}时整秒缓存;含有更细粒度的字段(纳秒等)时不缓存,每次完整格式化.
+ * 线程安全: 缓存的秒是不可变对象,通过volatile引用替换.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class CachedTimestampFormatter {
+
+    public static final String DEFAULT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+    private static final String MILLIS_PATTERN = "SSS";
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    private final DateTimeFormatter formatter;
+    private final DateTimeFormatter prefixFormatter;
+    private final DateTimeFormatter suffixFormatter;
+    private final boolean cacheable;
+    private final boolean hasMillis;
+    private volatile CachedSecond cachedSecond;
+
+    public CachedTimestampFormatter() {
+        this(DEFAULT_PATTERN);
+    }
+
+    public CachedTimestampFormatter(String pattern) {
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+        int millisIndex = pattern.lastIndexOf(MILLIS_PATTERN);
+        this.hasMillis = millisIndex >= 0;
+        String prefixPattern = hasMillis ? pattern.substring(0, millisIndex) : pattern;
+        String suffixPattern = hasMillis ? pattern.substring(millisIndex + MILLIS_PATTERN.length()) : "";
+        this.cacheable = !hasSubSecondField(prefixPattern) && !hasSubSecondField(suffixPattern);
+        this.prefixFormatter = cacheable ? DateTimeFormatter.ofPattern(prefixPattern) : null;
+        this.suffixFormatter = cacheable && !suffixPattern.isEmpty() ? DateTimeFormatter.ofPattern(suffixPattern) : null;
+    }
+
+    public String format(long epochMillis) {
+        StringBuilder sb = new StringBuilder(32);
+        format(epochMillis, sb);
+        return sb.toString();
+    }
+
+    public void format(long epochMillis, StringBuilder sb) {
+        if (!cacheable) {
+            sb.append(formatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault())));
+            return;
+        }
+        CachedSecond second = cachedSecond;
+        long millisOfSecond = second == null ? -1 : epochMillis - second.epochSecondMillis;
+        if (millisOfSecond < 0 || millisOfSecond >= MILLIS_PER_SECOND) {
+            second = renderSecond(epochMillis);
+            cachedSecond = second;
+            millisOfSecond = epochMillis - second.epochSecondMillis;
+        }
+        sb.append(second.prefix);
+        if (hasMillis) {
+            int millis = (int) millisOfSecond;
+            sb.append((char) ('0' + millis / 100));
+            sb.append((char) ('0' + millis / 10 % 10));
+            sb.append((char) ('0' + millis % 10));
+        }
+        sb.append(second.suffix);
+    }
+
+    private CachedSecond renderSecond(long epochMillis) {
+        long epochSecondMillis = Math.floorDiv(epochMillis, MILLIS_PER_SECOND) * MILLIS_PER_SECOND;
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(epochSecondMillis), ZoneId.systemDefault());
+        return new CachedSecond(
+            epochSecondMillis,
+            prefixFormatter.format(dateTime),
+            suffixFormatter == null ? "" : suffixFormatter.format(dateTime)
+        );
+    }
+
+    /**
+     * 粗略判断引号外是否还有毫秒以下的字段(S/n/N/A)
+     */
+    private static boolean hasSubSecondField(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c == 'S' || c == 'n' || c == 'N' || c == 'A')) {
+                return true;
+            }
+        }
+        return quoted;
+    }
+
+    private static final class CachedSecond {
+        private final long epochSecondMillis;
+        private final String prefix;
+        private final String suffix;
+
+        private CachedSecond(long epochSecondMillis, String prefix, String suffix) {
+            this.epochSecondMillis = epochSecondMillis;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+    }
+
+}
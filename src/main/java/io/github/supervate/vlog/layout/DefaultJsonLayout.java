@@ -1,74 +1,161 @@
 package io.github.supervate.vlog.layout;
 
 import io.github.supervate.vlog.Logger;
-import io.github.supervate.vlog.common.ThrowableUtils;
+import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.SystemUtils;
+import io.github.supervate.vlog.event.DeferredArgument;
+import io.github.supervate.vlog.event.KeyValue;
 import io.github.supervate.vlog.event.LogEvent;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Optional;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 
 import static io.github.supervate.vlog.common.Constants.*;
 
 
 /**
- * 默认日志格式化器
+ * 默认JSON日志格式化器
+ * <p>
+ * 每个事件输出一行JSON对象并以'\n'结尾(NDJSON);字符串值按转义表转义,消息直接格式化进缓冲后原地转义.
+ * 参数中的{@link KeyValue}额外输出为同名字段,数值/布尔值保持JSON原类型.
+ * 通过vt.vlog.layout.json.epoch可将事件时间输出为毫秒时间戳数值.
  *
  * @author supervate
  * @since 2024/04/27
  * <p>
  * All rights Reserved.
  */
-public class DefaultJsonLayout implements Layout<LogEvent> {
+public class DefaultJsonLayout extends AbstractLayout<LogEvent> {
 
     public static final String UN_DEFINE = "unDefine";
+    private static final char RECORD_SEPARATOR = '\n';
+
+    private final CachedTimestampFormatter timestampFormatter = new CachedTimestampFormatter();
+    /**
+     * 事件时间是否输出为毫秒时间戳
+     */
+    private final boolean epochTime;
+
+    public DefaultJsonLayout() {
+        this(SystemUtils.getSysPropertyBool(Constants.SYSTEM_PROPERTY_LOG_LAYOUT_JSON_EPOCH).orElse(false));
+    }
+
+    public DefaultJsonLayout(boolean epochTime) {
+        this.epochTime = epochTime;
+    }
+
+    public boolean isEpochTime() {
+        return epochTime;
+    }
 
     @Override
-    public String format(LogEvent event) {
-        if (event != null && event.getMessage() != null) {
-            Logger logger = event.getLogger();
-            StringBuilder sb = new StringBuilder();
-            sb.append(LEFT_BIG_BRACKET);
-
-            appendJsonItem(
-                "eventTime",
-                Optional
-                    .ofNullable(event.getEventTime())
-                    .map(eventTime -> LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getEventTime()), ZoneId.systemDefault()))
-                    .map(LocalDateTime::toString)
-                    .orElse(UN_DEFINE),
-                sb
-            ).append(COMMA);
-            appendJsonItem("threadName", Optional.ofNullable(event.getThreadName()).orElse(UN_DEFINE), sb).append(COMMA);
-            appendJsonItem("level", Optional.ofNullable(event.getLevel()).map(Enum::name).orElse(UN_DEFINE), sb).append(COMMA);
-            appendJsonItem("loggerName", Optional.ofNullable(logger).map(Logger::getName).orElse(UN_DEFINE), sb).append(COMMA);
-
-        appendJsonItem(
-            "message",
-            formatMessage(event.getMessage(), event.getArguments()),
-            sb
-        );
+    public void encode(LogEvent event, StringBuilder sb) {
+        if (event == null || event.getMessage() == null) {
+            sb.append(EMPTY_OBJECT_SYMBOL).append(RECORD_SEPARATOR);
+            return;
+        }
+        Logger logger = event.getLogger();
+        sb.append(LEFT_BIG_BRACKET);
+        appendEventTime(event.getEventTimeMillis(), sb).append(COMMA);
+        appendJsonItem("threadName", event.getThreadName() == null ? UN_DEFINE : event.getThreadName(), sb).append(COMMA);
+        appendJsonItem("level", event.getLevel() == null ? UN_DEFINE : event.getLevel().name(), sb).append(COMMA);
+        appendJsonItem("loggerName", logger == null || logger.getName() == null ? UN_DEFINE : logger.getName(), sb).append(COMMA);
+        appendJsonKey("message", sb);
+        sb.append(DOUBLE_QUOTES);
+        int messageStart = sb.length();
+        formatMessage(event.getMessage(), event.getArguments(), event.getArgumentCount(), sb);
+        JsonEscaper.escapeInPlace(sb, messageStart);
+        sb.append(DOUBLE_QUOTES);
+        appendKeyValues(event.getArguments(), event.getArgumentCount(), sb);
         if (event.getThrowable() != null) {
             sb.append(COMMA);
-            appendJsonItem("exception", ThrowableUtils.throwableToStr(event.getThrowable()), sb);
+            appendJsonKey("exception", sb);
+            sb.append(DOUBLE_QUOTES);
+            int exceptionStart = sb.length();
+            StackTraceRenderer.shared().render(event.getThrowable(), sb);
+            JsonEscaper.escapeInPlace(sb, exceptionStart);
+            sb.append(DOUBLE_QUOTES);
         }
-        sb.append(RIGHT_BIG_BRACKET);
-        return sb.toString();
+        sb.append(RIGHT_BIG_BRACKET).append(RECORD_SEPARATOR);
     }
-        return EMPTY_OBJECT_SYMBOL;
-}
 
-private static StringBuilder appendJsonItem(String key, String value, StringBuilder sb) {
-    sb.append(DOUBLE_QUOTES);
-    sb.append(key);
-    sb.append(DOUBLE_QUOTES);
-    sb.append(COLON);
-    sb.append(DOUBLE_QUOTES);
-    sb.append(value);
-    sb.append(DOUBLE_QUOTES);
-    return sb;
-}
+    private StringBuilder appendEventTime(long eventTime, StringBuilder sb) {
+        if (eventTime == LogEvent.NO_EVENT_TIME) {
+            return appendJsonItem("eventTime", UN_DEFINE, sb);
+        }
+        appendJsonKey("eventTime", sb);
+        if (epochTime) {
+            sb.append(eventTime);
+            return sb;
+        }
+        sb.append(DOUBLE_QUOTES);
+        timestampFormatter.format(eventTime, sb);
+        sb.append(DOUBLE_QUOTES);
+        return sb;
+    }
 
+    private static void appendKeyValues(Object[] args, int argCount, StringBuilder sb) {
+        if (args == null) {
+            return;
+        }
+        for (int i = 0; i < argCount; i++) {
+            Object arg = args[i];
+            if (arg instanceof DeferredArgument) {
+                arg = ((DeferredArgument) arg).get();
+            }
+            if (arg instanceof KeyValue) {
+                KeyValue keyValue = (KeyValue) arg;
+                sb.append(COMMA);
+                appendJsonKey(keyValue.getKey(), sb);
+                appendJsonValue(keyValue.getValue(), sb);
+            }
+        }
+    }
+
+    /**
+     * 数值/布尔值按JSON原类型输出,非有限的浮点数及其他对象按字符串输出
+     */
+    private static void appendJsonValue(Object value, StringBuilder sb) {
+        if (value instanceof DeferredArgument) {
+            value = ((DeferredArgument) value).get();
+        }
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isFinite(number)) {
+                sb.append(number);
+            } else {
+                appendJsonString(value.toString(), sb);
+            }
+        } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+            sb.append(value);
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else if (value instanceof CharSequence) {
+            appendJsonString((CharSequence) value, sb);
+        } else {
+            appendJsonString(String.valueOf(value), sb);
+        }
+    }
+
+    private static StringBuilder appendJsonItem(String key, CharSequence value, StringBuilder sb) {
+        appendJsonKey(key, sb);
+        appendJsonString(value, sb);
+        return sb;
+    }
+
+    private static void appendJsonKey(String key, StringBuilder sb) {
+        appendJsonString(key, sb);
+        sb.append(COLON);
+    }
+
+    private static void appendJsonString(CharSequence value, StringBuilder sb) {
+        sb.append(DOUBLE_QUOTES);
+        JsonEscaper.escape(value, sb);
+        sb.append(DOUBLE_QUOTES);
+    }
 
 }
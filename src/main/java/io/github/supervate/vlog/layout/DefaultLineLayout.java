@@ -1,14 +1,8 @@
 package io.github.supervate.vlog.layout;
 
 import io.github.supervate.vlog.Logger;
-import io.github.supervate.vlog.common.ThrowableUtils;
 import io.github.supervate.vlog.event.LogEvent;
 
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Optional;
-
 import static io.github.supervate.vlog.common.Constants.*;
 
 
@@ -20,37 +14,41 @@ import static io.github.supervate.vlog.common.Constants.*;
  * <p>
  * All rights Reserved.
  */
-public class DefaultLineLayout implements Layout<LogEvent> {
+public class DefaultLineLayout extends AbstractLayout<LogEvent> {
 
     public static final String UN_DEFINE = "unDefine";
 
+    private final CachedTimestampFormatter timestampFormatter = new CachedTimestampFormatter();
+
     @Override
-    public String format(LogEvent event) {
-        if (event != null && event.getMessage() != null) {
-            Logger logger = event.getLogger();
-            StringBuilder sb = new StringBuilder();
-            appendItem(
-                Optional
-                    .ofNullable(event.getEventTime())
-                    .map(eventTime -> LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getEventTime()), ZoneId.systemDefault()))
-                    .map(LocalDateTime::toString)
-                    .orElse(UN_DEFINE),
-                sb
-            );
-            appendItem(Optional.ofNullable(event.getThreadName()).orElse(UN_DEFINE), sb);
-            appendItem(Optional.ofNullable(event.getLevel()).map(Enum::name).orElse(UN_DEFINE), sb);
-            appendItem(Optional.ofNullable(logger).map(Logger::getName).orElse(UN_DEFINE), sb);
-            sb.append("-");
-            sb.append(SPACE);
-            sb.append(formatMessage(event.getMessage(), event.getArguments()));
-            if (event.getThrowable() != null) {
-                sb.append(System.lineSeparator());
-                sb.append(ThrowableUtils.throwableToStr(event.getThrowable()));
-            }
+    public void encode(LogEvent event, StringBuilder sb) {
+        if (event == null || event.getMessage() == null) {
+            return;
+        }
+        Logger logger = event.getLogger();
+        appendEventTime(event.getEventTimeMillis(), sb);
+        appendItem(event.getThreadName() == null ? UN_DEFINE : event.getThreadName(), sb);
+        appendItem(event.getLevel() == null ? UN_DEFINE : event.getLevel().name(), sb);
+        appendItem(logger == null || logger.getName() == null ? UN_DEFINE : logger.getName(), sb);
+        sb.append("-");
+        sb.append(SPACE);
+        formatMessage(event.getMessage(), event.getArguments(), event.getArgumentCount(), sb);
+        if (event.getThrowable() != null) {
             sb.append(System.lineSeparator());
-            return sb.toString();
+            StackTraceRenderer.shared().render(event.getThrowable(), sb);
+        }
+        sb.append(System.lineSeparator());
+    }
+
+    private void appendEventTime(long eventTime, StringBuilder sb) {
+        sb.append(LEFT_MIDDLE_BRACKET);
+        if (eventTime == LogEvent.NO_EVENT_TIME) {
+            sb.append(UN_DEFINE);
+        } else {
+            timestampFormatter.format(eventTime, sb);
         }
-        return "";
+        sb.append(RIGHT_MIDDLE_BRACKET);
+        sb.append(SPACE);
     }
 
     private static void appendItem(String item, StringBuilder sb) {
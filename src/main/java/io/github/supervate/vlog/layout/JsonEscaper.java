@@ -0,0 +1,98 @@
+package io.github.supervate.vlog.layout;
+
+/**
+ * JSON字符串转义
+ * <p>
+ * 按ASCII转义表判断每个字符: 引号、反斜杠及控制字符需要转义,其余字符原样输出.
+ * 不需要转义的连续字符按区间整段复制;原地转义在没有需要转义的字符时不做任何复制.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class JsonEscaper {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    /**
+     * ASCII字符的转义序列,null表示无需转义
+     */
+    private static final String[] ESCAPES = new String[128];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = "\\u00" + HEX_DIGITS[c >> 4] + HEX_DIGITS[c & 0xF];
+        }
+        ESCAPES['"'] = "\\\"";
+        ESCAPES['\\'] = "\\\\";
+        ESCAPES['\n'] = "\\n";
+        ESCAPES['\r'] = "\\r";
+        ESCAPES['\t'] = "\\t";
+        ESCAPES['\b'] = "\\b";
+        ESCAPES['\f'] = "\\f";
+    }
+
+    private JsonEscaper() {
+    }
+
+    private static String escapeOf(char c) {
+        return c < 128 ? ESCAPES[c] : null;
+    }
+
+    /**
+     * 将value转义后追加到sb(不含两侧引号)
+     */
+    public static void escape(CharSequence value, StringBuilder sb) {
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            String escape = escapeOf(value.charAt(i));
+            if (escape != null) {
+                if (i > start) {
+                    sb.append(value, start, i);
+                }
+                sb.append(escape);
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            sb.append(value, start, length);
+        }
+    }
+
+    /**
+     * 原地转义sb中from之后的内容,用于已直接格式化进sb的消息
+     */
+    public static void escapeInPlace(StringBuilder sb, int from) {
+        int end = sb.length();
+        int extra = 0;
+        int first = -1;
+        for (int i = from; i < end; i++) {
+            String escape = escapeOf(sb.charAt(i));
+            if (escape != null) {
+                extra += escape.length() - 1;
+                if (first < 0) {
+                    first = i;
+                }
+            }
+        }
+        if (extra == 0) {
+            return;
+        }
+        // 扩容后从尾部向前移动,不需要额外缓冲
+        sb.setLength(end + extra);
+        int target = end + extra;
+        for (int i = end - 1; i >= first; i--) {
+            char c = sb.charAt(i);
+            String escape = escapeOf(c);
+            if (escape == null) {
+                sb.setCharAt(--target, c);
+            } else {
+                for (int j = escape.length() - 1; j >= 0; j--) {
+                    sb.setCharAt(--target, escape.charAt(j));
+                }
+            }
+        }
+    }
+
+}
@@ -1,5 +1,9 @@
 package io.github.supervate.vlog.layout;
 
+import io.github.supervate.vlog.event.DeferredArgument;
+import io.github.supervate.vlog.event.KeyValue;
+import io.github.supervate.vlog.event.PrimitiveArgument;
+
 import static io.github.supervate.vlog.common.Constants.*;
 
 /**
@@ -12,36 +16,80 @@ import static io.github.supervate.vlog.common.Constants.*;
  */
 public interface Layout<E> {
 
+    /**
+     * 格式化事件为字符串.
+     * <p>
+     * 只实现{@link #encode(Object, StringBuilder)}的layout可继承{@link AbstractLayout},由其委托实现本方法.
+     */
     String format(E event);
 
+    /**
+     * 将事件格式化后追加到调用方提供的(可复用的)StringBuilder中.
+     * <p>
+     * 输出端在消费线程中复用同一个StringBuilder,再直接编码进字节缓冲,不产生中间String;
+     * 内置layout实现本方法以避免逐事件分配.默认实现委托{@link #format(Object)}.
+     */
+    default void encode(E event, StringBuilder sb) {
+        sb.append(format(event));
+    }
+
     default String formatMessage(String message, Object... args) {
-        if (args == null || args.length == 0) {
+        return formatMessage(message, args, args == null ? 0 : args.length);
+    }
+
+    /**
+     * @param argCount 实际参数个数,可复用事件的参数数组长度可能大于它
+     * @see io.github.supervate.vlog.event.LogEvent#getArgumentCount()
+     */
+    default String formatMessage(String message, Object[] args, int argCount) {
+        if (args == null || argCount == 0) {
             return message;
         }
-        int matchedArgIndex = 0;
-        char[] charArray = message.toCharArray();
-        StringBuilder messageBuilder = new StringBuilder();
-        boolean leftBracketMatched = false;
-        for (char c : charArray) {
-            if (leftBracketMatched) {
-                // clear left flag
-                leftBracketMatched = false;
-                // try to match argument
-                if (c == RIGHT_BIG_BRACKET_CHAR) {
-                    // append message
-                    messageBuilder.append(matchedArgIndex < args.length ? args[matchedArgIndex++] : EMPTY_OBJECT_SYMBOL);
-                    continue;
-                } else {
-                    messageBuilder.append(LEFT_BIG_BRACKET);
-                }
-            }
-            if (c == LEFT_BIG_BRACKET_CHAR) {
-                leftBracketMatched = true;
-                continue;
-            }
-            messageBuilder.append(c);
+        StringBuilder sb = new StringBuilder(message.length() + 16 * argCount);
+        formatMessage(message, args, argCount, sb);
+        return sb.toString();
+    }
+
+    /**
+     * 将消息模板与参数合并后追加到sb,'{}'依次替换为参数,参数不足时替换为'{}'.
+     * <p>
+     * 模板经{@link MessageTemplateCache#shared()}缓存解析结果,常量模板不会被重复扫描.
+     */
+    default void formatMessage(String message, Object[] args, int argCount, StringBuilder sb) {
+        if (args == null || argCount == 0) {
+            sb.append(message);
+            return;
+        }
+        MessageTemplateCache.shared().get(message).format(args, argCount, sb);
+    }
+
+    /**
+     * 常见的装箱基本类型直接追加数值,避免toString产生临时字符串;键值参数渲染为key=value,延迟参数先求值.
+     */
+    static void appendArgument(Object arg, StringBuilder sb) {
+        if (arg instanceof String) {
+            sb.append((String) arg);
+        } else if (arg instanceof Integer) {
+            sb.append(((Integer) arg).intValue());
+        } else if (arg instanceof Long) {
+            sb.append(((Long) arg).longValue());
+        } else if (arg instanceof Boolean) {
+            sb.append(((Boolean) arg).booleanValue());
+        } else if (arg instanceof Character) {
+            sb.append(((Character) arg).charValue());
+        } else if (arg instanceof CharSequence) {
+            sb.append((CharSequence) arg);
+        } else if (arg instanceof PrimitiveArgument) {
+            ((PrimitiveArgument) arg).appendTo(sb);
+        } else if (arg instanceof KeyValue) {
+            KeyValue keyValue = (KeyValue) arg;
+            sb.append(keyValue.getKey()).append('=');
+            appendArgument(keyValue.getValue(), sb);
+        } else if (arg instanceof DeferredArgument) {
+            appendArgument(((DeferredArgument) arg).get(), sb);
+        } else {
+            sb.append(arg);
         }
-        return messageBuilder.toString();
     }
 
 }
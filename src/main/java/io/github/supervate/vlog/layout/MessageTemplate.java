@@ -0,0 +1,84 @@
+package io.github.supervate.vlog.layout;
+
+import static io.github.supervate.vlog.common.Constants.*;
+
+/**
+ * 预解析的消息模板
+ * <p>
+ * 记录模板中每个'{}'占位符的位置,格式化时只需按区间复制字面量并追加参数,不再逐字符扫描.
+ * 不可变,可在线程间共享.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class MessageTemplate {
+
+    private static final int[] NO_PLACEHOLDER = new int[0];
+
+    private final String template;
+    /**
+     * 各占位符'{'在模板中的下标
+     */
+    private final int[] placeholders;
+
+    private MessageTemplate(String template, int[] placeholders) {
+        this.template = template;
+        this.placeholders = placeholders;
+    }
+
+    public static MessageTemplate parse(String template) {
+        int length = template.length();
+        int count = 0;
+        for (int i = 0; i < length - 1; i++) {
+            if (isPlaceholder(template, i)) {
+                count++;
+                i++;
+            }
+        }
+        if (count == 0) {
+            return new MessageTemplate(template, NO_PLACEHOLDER);
+        }
+        int[] placeholders = new int[count];
+        int index = 0;
+        for (int i = 0; i < length - 1; i++) {
+            if (isPlaceholder(template, i)) {
+                placeholders[index++] = i;
+                i++;
+            }
+        }
+        return new MessageTemplate(template, placeholders);
+    }
+
+    private static boolean isPlaceholder(String template, int index) {
+        return template.charAt(index) == LEFT_BIG_BRACKET_CHAR && template.charAt(index + 1) == RIGHT_BIG_BRACKET_CHAR;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public int getPlaceholderCount() {
+        return placeholders.length;
+    }
+
+    /**
+     * 将参数依次填入占位符后追加到sb,参数不足时保留'{}'.
+     */
+    public void format(Object[] args, int argCount, StringBuilder sb) {
+        int start = 0;
+        for (int i = 0; i < placeholders.length; i++) {
+            int placeholder = placeholders[i];
+            sb.append(template, start, placeholder);
+            if (i < argCount) {
+                Layout.appendArgument(args[i], sb);
+            } else {
+                sb.append(EMPTY_OBJECT_SYMBOL);
+            }
+            start = placeholder + 2;
+        }
+        sb.append(template, start, template.length());
+    }
+
+}
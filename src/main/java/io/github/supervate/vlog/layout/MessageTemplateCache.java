@@ -0,0 +1,109 @@
+package io.github.supervate.vlog.layout;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息模板缓存
+ * <p>
+ * 直接映射的定长表: 按模板的hashCode定位槽位,先比较引用(常量模板),再以equals兜底;
+ * 未命中时解析并覆盖该槽位,因此动态拼接的消息只会替换已有条目,不会让缓存无限增长.
+ * <p>
+ * 线程安全: 条目是不可变对象,槽位的读写允许竞争,最坏情况只是多解析一次.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class MessageTemplateCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    /**
+     * 超过该长度的消息多为动态拼接的内容,不缓存
+     */
+    public static final int MAX_CACHED_TEMPLATE_LENGTH = 1024;
+
+    volatile private static MessageTemplateCache shared = new MessageTemplateCache(DEFAULT_CAPACITY);
+
+    private final MessageTemplate[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity 槽位数,向上取2的幂;0表示不缓存
+     */
+    public MessageTemplateCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative.");
+        }
+        int size = capacity == 0 ? 0 : Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.table = new MessageTemplate[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return 内置layout共用的缓存
+     */
+    public static MessageTemplateCache shared() {
+        return shared;
+    }
+
+    /**
+     * 替换共用的缓存(如调整容量)
+     */
+    public static void setShared(MessageTemplateCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("cache must not be null.");
+        }
+        shared = cache;
+    }
+
+    public MessageTemplate get(String message) {
+        if (table.length == 0 || message.length() > MAX_CACHED_TEMPLATE_LENGTH) {
+            misses.increment();
+            return MessageTemplate.parse(message);
+        }
+        int hash = message.hashCode();
+        int index = (hash ^ (hash >>> 16)) & mask;
+        MessageTemplate template = table[index];
+        if (template != null) {
+            String cached = template.getTemplate();
+            if (cached == message || cached.equals(message)) {
+                hits.increment();
+                return template;
+            }
+        }
+        misses.increment();
+        template = MessageTemplate.parse(message);
+        table[index] = template;
+        return template;
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 命中率,尚无查询时为0
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+}
@@ -0,0 +1,365 @@
+package io.github.supervate.vlog.layout;
+
+import io.github.supervate.vlog.Logger;
+import io.github.supervate.vlog.common.Constants;
+import io.github.supervate.vlog.common.SystemUtils;
+import io.github.supervate.vlog.event.LogEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模式日志格式化器
+ * <p>
+ * 模式在构造时解析为一组转换器,逐事件格式化时只需依次调用转换器,不再解释模式.
+ * 支持的转换符:
+ * <li>
+ * %d/%date{时间格式} 事件时间,默认yyyy-MM-dd'T'HH:mm:ss.SSS
+ * <li>
+ * %t/%thread 线程名; %p/%level 级别
+ * <li>
+ * %c/%logger{长度} logger名称,指定长度时从左起将包名缩写为首字母(最后一段保留),结果按logger实例缓存
+ * <li>
+ * %m/%msg/%message 合并参数后的消息
+ * <li>
+ * %ex/%throwable 异常堆栈(前置换行),事件无异常时为空;模式中未包含时自动加在末尾的%n之前
+ * <li>
+ * %n 换行; %% 百分号
+ * <p>
+ * 转换符前可指定宽度: %-5level 左对齐补足5位, %5level 右对齐补足5位, %.10logger 超出10位时保留末尾10位,
+ * %.-10logger 超出时保留开头10位.
+ * <p>
+ * 通过vt.vlog.layout.impl选用本类时,模式由vt.vlog.layout.pattern配置,默认与{@link DefaultLineLayout}的输出一致.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class PatternLayout extends AbstractLayout<LogEvent> {
+
+    public static final String DEFAULT_PATTERN = "[%d] [%t] [%level] [%logger] - %msg%n";
+    public static final String UN_DEFINE = "unDefine";
+    private static final String SPACES = "                                ";
+
+    private final String pattern;
+    private final PatternConverter[] converters;
+
+    public PatternLayout() {
+        this(SystemUtils.getSysProperty(Constants.SYSTEM_PROPERTY_LOG_LAYOUT_PATTERN).orElse(DEFAULT_PATTERN));
+    }
+
+    /**
+     * @throws IllegalArgumentException 模式不合法
+     */
+    public PatternLayout(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("pattern must not be empty.");
+        }
+        this.pattern = pattern;
+        List<PatternConverter> converterList = parse(pattern);
+        this.converters = converterList.toArray(new PatternConverter[0]);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    @Override
+    public void encode(LogEvent event, StringBuilder sb) {
+        if (event == null || event.getMessage() == null) {
+            return;
+        }
+        for (PatternConverter converter : converters) {
+            converter.format(event, sb);
+        }
+    }
+
+    // ------------------------------------------------------------ parse
+
+    private List<PatternConverter> parse(String pattern) {
+        List<PatternConverter> converterList = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean hasThrowable = false;
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i >= length) {
+                throw new IllegalArgumentException("Invalid pattern, dangling '%' at end: " + pattern);
+            }
+            if (pattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            // format modifier: [-][minWidth][.[-]maxWidth]
+            boolean leftAlign = false;
+            int minWidth = 0;
+            int maxWidth = 0;
+            boolean truncateEnd = false;
+            if (pattern.charAt(i) == '-') {
+                leftAlign = true;
+                i++;
+            }
+            while (i < length && Character.isDigit(pattern.charAt(i))) {
+                minWidth = minWidth * 10 + (pattern.charAt(i++) - '0');
+            }
+            if (i < length && pattern.charAt(i) == '.') {
+                i++;
+                if (i < length && pattern.charAt(i) == '-') {
+                    truncateEnd = true;
+                    i++;
+                }
+                int start = i;
+                while (i < length && Character.isDigit(pattern.charAt(i))) {
+                    maxWidth = maxWidth * 10 + (pattern.charAt(i++) - '0');
+                }
+                if (start == i || maxWidth == 0) {
+                    throw new IllegalArgumentException("Invalid pattern, missing max width at " + start + ": " + pattern);
+                }
+            }
+            int nameStart = i;
+            while (i < length && Character.isLetter(pattern.charAt(i))) {
+                i++;
+            }
+            String name = pattern.substring(nameStart, i);
+            String option = null;
+            if (i < length && pattern.charAt(i) == '{') {
+                int end = pattern.indexOf('}', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Invalid pattern, unclosed '{' at " + i + ": " + pattern);
+                }
+                option = pattern.substring(i + 1, end);
+                i = end + 1;
+            }
+            if (literal.length() > 0) {
+                converterList.add(new LiteralConverter(literal.toString()));
+                literal.setLength(0);
+            }
+            PatternConverter converter = createConverter(name, option, pattern);
+            hasThrowable |= converter instanceof ThrowableConverter;
+            if (minWidth > 0 || maxWidth > 0) {
+                converter = new PaddingConverter(converter, leftAlign, minWidth, maxWidth, truncateEnd);
+            }
+            converterList.add(converter);
+        }
+        if (literal.length() > 0) {
+            converterList.add(new LiteralConverter(literal.toString()));
+        }
+        if (!hasThrowable) {
+            // 异常放在末尾的换行之前,与DefaultLineLayout一致
+            int last = converterList.size() - 1;
+            boolean endsWithNewLine = last >= 0 && converterList.get(last) instanceof LineSeparatorConverter;
+            converterList.add(endsWithNewLine ? last : converterList.size(), new ThrowableConverter());
+        }
+        return Collections.unmodifiableList(converterList);
+    }
+
+    private PatternConverter createConverter(String name, String option, String pattern) {
+        switch (name) {
+            case "d":
+            case "date":
+                return new DateConverter(option == null || option.isEmpty() ? CachedTimestampFormatter.DEFAULT_PATTERN : option);
+            case "t":
+            case "thread":
+                return (event, sb) -> sb.append(event.getThreadName() == null ? UN_DEFINE : event.getThreadName());
+            case "p":
+            case "level":
+                return (event, sb) -> sb.append(event.getLevel() == null ? UN_DEFINE : event.getLevel().name());
+            case "c":
+            case "logger":
+                return new LoggerConverter(parseLength(option, pattern));
+            case "m":
+            case "msg":
+            case "message":
+                return (event, sb) -> formatMessage(event.getMessage(), event.getArguments(), event.getArgumentCount(), sb);
+            case "ex":
+            case "throwable":
+                return new ThrowableConverter();
+            case "n":
+                return new LineSeparatorConverter();
+            default:
+                throw new IllegalArgumentException("Invalid pattern, unknown conversion '%" + name + "': " + pattern);
+        }
+    }
+
+    private static int parseLength(String option, String pattern) {
+        if (option == null || option.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(option.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid pattern, logger length must be a number: " + pattern, e);
+        }
+    }
+
+    // ------------------------------------------------------------ converters
+
+    /**
+     * 单个转换器,将事件的一部分追加到sb
+     */
+    @FunctionalInterface
+    interface PatternConverter {
+        void format(LogEvent event, StringBuilder sb);
+    }
+
+    private static final class LiteralConverter implements PatternConverter {
+        private final String literal;
+
+        private LiteralConverter(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public void format(LogEvent event, StringBuilder sb) {
+            sb.append(literal);
+        }
+    }
+
+    private static final class LineSeparatorConverter implements PatternConverter {
+        private final String lineSeparator = System.lineSeparator();
+
+        @Override
+        public void format(LogEvent event, StringBuilder sb) {
+            sb.append(lineSeparator);
+        }
+    }
+
+    private static final class DateConverter implements PatternConverter {
+        private final CachedTimestampFormatter formatter;
+
+        private DateConverter(String datePattern) {
+            try {
+                this.formatter = new CachedTimestampFormatter(datePattern);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid pattern, bad date format: " + datePattern, e);
+            }
+        }
+
+        @Override
+        public void format(LogEvent event, StringBuilder sb) {
+            long eventTime = event.getEventTimeMillis();
+            if (eventTime == LogEvent.NO_EVENT_TIME) {
+                sb.append(UN_DEFINE);
+            } else {
+                formatter.format(eventTime, sb);
+            }
+        }
+    }
+
+    private static final class ThrowableConverter implements PatternConverter {
+        @Override
+        public void format(LogEvent event, StringBuilder sb) {
+            if (event.getThrowable() != null) {
+                sb.append(System.lineSeparator());
+                StackTraceRenderer.shared().render(event.getThrowable(), sb);
+            }
+        }
+    }
+
+    /**
+     * logger名称,指定长度时缩写;缩写结果按logger实例缓存,logger数量有限
+     */
+    static final class LoggerConverter implements PatternConverter {
+        private final int length;
+        private final ConcurrentHashMap<Logger, String> abbreviations = new ConcurrentHashMap<>();
+
+        LoggerConverter(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public void format(LogEvent event, StringBuilder sb) {
+            Logger logger = event.getLogger();
+            if (logger == null || logger.getName() == null) {
+                sb.append(UN_DEFINE);
+                return;
+            }
+            if (length <= 0 || logger.getName().length() <= length) {
+                sb.append(logger.getName());
+                return;
+            }
+            String abbreviation = abbreviations.get(logger);
+            if (abbreviation == null) {
+                abbreviation = abbreviate(logger.getName(), length);
+                abbreviations.put(logger, abbreviation);
+            }
+            sb.append(abbreviation);
+        }
+
+        /**
+         * 从左起将包名缩写为首字母,直到总长不超过length;最后一段总是完整保留
+         */
+        static String abbreviate(String name, int length) {
+            String[] segments = name.split("\\.");
+            int total = name.length();
+            StringBuilder sb = new StringBuilder(Math.min(total, length + 16));
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                boolean last = i == segments.length - 1;
+                if (!last && total > length && segment.length() > 1) {
+                    total -= segment.length() - 1;
+                    segment = segment.substring(0, 1);
+                }
+                sb.append(segment);
+                if (!last) {
+                    sb.append('.');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 按宽度补齐/截断被包装的转换器的输出,在sb上原地完成
+     */
+    private static final class PaddingConverter implements PatternConverter {
+        private final PatternConverter delegate;
+        private final boolean leftAlign;
+        private final int minWidth;
+        private final int maxWidth;
+        private final boolean truncateEnd;
+
+        private PaddingConverter(PatternConverter delegate, boolean leftAlign, int minWidth, int maxWidth, boolean truncateEnd) {
+            this.delegate = delegate;
+            this.leftAlign = leftAlign;
+            this.minWidth = minWidth;
+            this.maxWidth = maxWidth;
+            this.truncateEnd = truncateEnd;
+        }
+
+        @Override
+        public void format(LogEvent event, StringBuilder sb) {
+            int start = sb.length();
+            delegate.format(event, sb);
+            int written = sb.length() - start;
+            if (maxWidth > 0 && written > maxWidth) {
+                if (truncateEnd) {
+                    sb.setLength(start + maxWidth);
+                } else {
+                    sb.delete(start, start + written - maxWidth);
+                }
+                written = maxWidth;
+            }
+            int padding = minWidth - written;
+            while (padding > 0) {
+                int count = Math.min(padding, SPACES.length());
+                if (leftAlign) {
+                    sb.append(SPACES, 0, count);
+                } else {
+                    sb.insert(start, SPACES, 0, count);
+                }
+                padding -= count;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package io.github.supervate.vlog.layout;
+
+import io.github.supervate.vlog.common.ThrowableUtils;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异常堆栈渲染器
+ * <p>
+ * 堆栈直接渲染进输出缓冲,可限制每个异常的帧数并过滤指定包的帧.
+ * 渲染结果按堆栈哈希缓存在直接映射的定长表中(异常类型、消息、各帧逐一比较确认),同一异常反复输出时复用渲染结果;
+ * 开启去重后重复的异常只输出首行及引用,如: {@code (same stack as #1a2b3c4d, seen 4211 times)},
+ * 首次输出的完整堆栈首行带有对应的{@code [stack #1a2b3c4d]}标记.
+ * <p>
+ * 线程安全: 条目的内容在发布后不再修改(计数除外),槽位的读写允许竞争,最坏情况只是多渲染一次.
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public final class StackTraceRenderer {
+
+    public static final int DEFAULT_CACHE_SIZE = 256;
+    private static final int MAX_CAUSE_DEPTH = 64;
+
+    volatile private static StackTraceRenderer shared = new StackTraceRenderer(0, null, DEFAULT_CACHE_SIZE, false);
+
+    private final int maxDepth;
+    private final String[] filteredPackages;
+    private final boolean dedup;
+    private final Entry[] table;
+    private final int mask;
+
+    /**
+     * @param maxDepth         每个异常最多输出的帧数,<=0不限制
+     * @param filteredPackages 不输出的帧的类名前缀
+     * @param cacheSize        缓存槽位数,向上取2的幂;0表示不缓存(也不去重)
+     * @param dedup            是否将重复的堆栈替换为引用
+     */
+    public StackTraceRenderer(int maxDepth, String[] filteredPackages, int cacheSize, boolean dedup) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize must not be negative.");
+        }
+        this.maxDepth = maxDepth;
+        this.filteredPackages = filteredPackages == null ? new String[0] : filteredPackages.clone();
+        int size = cacheSize == 0 ? 0 : Integer.highestOneBit(Math.max(cacheSize - 1, 1)) << 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+        this.dedup = dedup && size > 0;
+    }
+
+    /**
+     * @return 内置layout共用的渲染器
+     */
+    public static StackTraceRenderer shared() {
+        return shared;
+    }
+
+    public static void setShared(StackTraceRenderer renderer) {
+        if (renderer == null) {
+            throw new IllegalArgumentException("renderer must not be null.");
+        }
+        shared = renderer;
+    }
+
+    /**
+     * 将异常堆栈追加到sb,末尾不换行
+     */
+    public void render(Throwable throwable, StringBuilder sb) {
+        if (table.length == 0) {
+            ThrowableUtils.appendThrowable(throwable, sb, maxDepth, filteredPackages);
+            return;
+        }
+        Shape shape = new Shape(throwable);
+        int index = (shape.hash ^ (shape.hash >>> 16)) & mask;
+        Entry entry = table[index];
+        if (entry != null && entry.shape.equals(shape)) {
+            long seen = entry.seen.incrementAndGet();
+            if (dedup) {
+                sb.append(entry.firstLine)
+                    .append(" (same stack as #").append(entry.id)
+                    .append(", seen ").append(seen).append(" times)");
+            } else {
+                sb.append(entry.rendered);
+            }
+            return;
+        }
+        int start = sb.length();
+        ThrowableUtils.appendThrowable(throwable, sb, maxDepth, filteredPackages);
+        String rendered = sb.substring(start);
+        entry = new Entry(shape, rendered);
+        table[index] = entry;
+        if (dedup) {
+            // 首次输出时在首行末尾标记引用编号
+            int firstLineEnd = start + entry.firstLine.length();
+            sb.insert(firstLineEnd, " [stack #" + entry.id + "]");
+        }
+    }
+
+    public String render(Throwable throwable) {
+        StringBuilder sb = new StringBuilder(1024);
+        render(throwable, sb);
+        return sb.toString();
+    }
+
+    /**
+     * 参与比较的异常特征: cause链上各异常的类型、消息与堆栈
+     */
+    private static final class Shape {
+        private final Class<?>[] types;
+        private final String[] messages;
+        private final StackTraceElement[][] traces;
+        private final int hash;
+
+        private Shape(Throwable throwable) {
+            int count = 0;
+            for (Throwable t = throwable; t != null && count < MAX_CAUSE_DEPTH; t = t.getCause()) {
+                count++;
+            }
+            this.types = new Class<?>[count];
+            this.messages = new String[count];
+            this.traces = new StackTraceElement[count][];
+            int h = 1;
+            Throwable t = throwable;
+            for (int i = 0; i < count; i++, t = t.getCause()) {
+                types[i] = t.getClass();
+                messages[i] = t.getMessage();
+                traces[i] = t.getStackTrace();
+                h = 31 * h + types[i].getName().hashCode();
+                h = 31 * h + Objects.hashCode(messages[i]);
+                h = 31 * h + Arrays.hashCode(traces[i]);
+            }
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape) o;
+            return hash == other.hash
+                && Arrays.equals(types, other.types)
+                && Arrays.equals(messages, other.messages)
+                && Arrays.deepEquals(traces, other.traces);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final Shape shape;
+        private final String rendered;
+        private final String firstLine;
+        private final String id;
+        private final AtomicLong seen = new AtomicLong(1);
+
+        private Entry(Shape shape, String rendered) {
+            this.shape = shape;
+            this.rendered = rendered;
+            int firstLineEnd = rendered.indexOf(System.lineSeparator());
+            this.firstLine = firstLineEnd < 0 ? rendered : rendered.substring(0, firstLineEnd);
+            this.id = Integer.toHexString(shape.hash);
+        }
+    }
+
+}
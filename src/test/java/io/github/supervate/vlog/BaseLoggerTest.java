@@ -8,6 +8,7 @@ import io.github.supervate.vlog.common.ReflectUtils;
 import io.github.supervate.vlog.common.SystemUtils;
 import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.layout.CachedTimestampFormatter;
 
 import java.io.IOException;
 import java.lang.reflect.Constructor;
@@ -16,6 +17,7 @@ import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -89,15 +91,13 @@ public class BaseLoggerTest {
     protected static String getLogEventTimeStr(LogEvent logEvent) {
         return LocalDateTime
             .ofInstant(Instant.ofEpochMilli(logEvent.getEventTime()), ZoneId.systemDefault())
-            .toString();
+            .format(DateTimeFormatter.ofPattern(CachedTimestampFormatter.DEFAULT_PATTERN));
     }
 
     protected static void waitingForLoggerFactoryAsyncAppend() throws IllegalAccessException, InterruptedException {
-        List<Appender<?>> appenders = getFieldValue(
-            getFieldValue(LoggerFactory.class, "APPENDER_COMBINER", true),
-            "appenderList",
-            true
-        );
+        Appender<?> combiner = getFieldValue(LoggerFactory.class, "APPENDER_COMBINER", true);
+        List<Appender<?>> appenders = new ArrayList<>(Objects.requireNonNull(getFieldValue(combiner, "appenderList", true)));
+        appenders.add(combiner);
         boolean allEmpty = false;
         while (!allEmpty) {
             allEmpty = true;
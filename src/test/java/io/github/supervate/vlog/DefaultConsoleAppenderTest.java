@@ -1,7 +1,10 @@
 package io.github.supervate.vlog;
 
+import io.github.supervate.vlog.appender.AppenderCombiner;
 import io.github.supervate.vlog.appender.DefaultPrintStreamAppender;
+import io.github.supervate.vlog.appender.OverflowPolicy;
 import io.github.supervate.vlog.event.Level;
+import io.github.supervate.vlog.event.LogEvent;
 import io.github.supervate.vlog.layout.DefaultLineLayout;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.MethodOrderer;
@@ -10,8 +13,12 @@ import org.junit.jupiter.api.TestMethodOrder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 功能：日志测试
@@ -46,16 +53,309 @@ public class DefaultConsoleAppenderTest extends BaseLoggerTest {
             // make all level's log
             makeLevelLogs(logger);
             // waiting for log collect,its async write.
-            waitingForAsyncAppend(defaultPrintStreamAppender);
+            String[] logs = awaitLines(logCollectStream, Level.ERROR.ordinal() - limitLevel.ordinal() + 1);
             // check console log
-            checkLevelLogs(
-                logger,
-                logCollectStream.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()),
-                logger.getLevel()
-            );
+            checkLevelLogs(logger, logs, logger.getLevel());
 
             defaultPrintStreamAppender.stop();
         }
     }
 
+    @Test
+    public void overflowPolicy() throws IOException, InterruptedException, IllegalAccessException {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            if (policy == OverflowPolicy.BLOCK) {
+                continue;
+            }
+            BlockingOutputStream blockingStream = new BlockingOutputStream();
+            PrintStream printStream = new PrintStream(blockingStream);
+            DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+            appender.setQueueCapacity(4);
+            appender.setOverflowPolicy(policy);
+            appender.setOverflowTimeoutMillis(10);
+            appender.setDiscardFillRatio(0.5);
+            appender.setDiscardReportIntervalMillis(0);
+            appender.start();
+            Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), appender, Level.TRACE);
+
+            logger.info("first");
+            // consumer took the first event and is stuck on writing it
+            blockingStream.awaitEntered();
+            for (int i = 0; i < 9; i++) {
+                logger.info("info-{}", i);
+            }
+            logger.warn("warn");
+            int written;
+            switch (policy) {
+                case DISCARD_BELOW_LEVEL:
+                    // infos are discarded once half of the queue is used, warn is kept
+                    Assertions.assertEquals(7, appender.getDroppedEventCount(Level.INFO));
+                    Assertions.assertEquals(0, appender.getDroppedEventCount(Level.WARN));
+                    written = 4;
+                    break;
+                default:
+                    Assertions.assertEquals(6, appender.getDroppedEventCount());
+                    written = 5;
+                    break;
+            }
+            blockingStream.release();
+            String[] logs = awaitLines(blockingStream.collected, written);
+            Assertions.assertEquals(written, logs.length, policy.name());
+            Assertions.assertTrue(logs[0].endsWith("first"));
+            if (policy == OverflowPolicy.DROP_OLDEST || policy == OverflowPolicy.DISCARD_BELOW_LEVEL) {
+                Assertions.assertTrue(logs[written - 1].endsWith("warn"), policy.name());
+            } else {
+                Assertions.assertTrue(logs[written - 1].endsWith("info-3"), policy.name());
+            }
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void garbageFreeOverflow() throws IOException, InterruptedException {
+        OverflowPolicy[] policies = { OverflowPolicy.DROP_NEW, OverflowPolicy.BLOCK_TIMEOUT, OverflowPolicy.DROP_OLDEST, OverflowPolicy.BLOCK };
+        for (OverflowPolicy policy : policies) {
+            BlockingOutputStream blockingStream = new BlockingOutputStream();
+            PrintStream printStream = new PrintStream(blockingStream);
+            DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+            appender.setGarbageFree(true, 4);
+            appender.setOverflowPolicy(policy);
+            appender.setOverflowTimeoutMillis(10);
+            appender.setStopTimeoutMillis(100);
+            appender.start();
+            Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), appender, Level.TRACE);
+            logger.setGarbageFree(true);
+
+            logger.info("first");
+            // the stuck consumer holds the slot of the first event, three slots are left
+            blockingStream.awaitEntered();
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    logger.info("info-{}", i);
+                }
+            }, "garbage-free-producer");
+            producer.start();
+            if (policy == OverflowPolicy.BLOCK) {
+                producer.join(200);
+                Assertions.assertTrue(producer.isAlive());
+                // stop releases the producer even though no slot is ever returned
+                Thread stopper = new Thread(appender::stop, "garbage-free-stopper");
+                stopper.start();
+                producer.join(5000);
+                Assertions.assertFalse(producer.isAlive());
+                Assertions.assertEquals(7, appender.getDroppedEventCount(Level.INFO));
+                blockingStream.release();
+                stopper.join();
+                continue;
+            }
+            // the policy applies when the slots run out, the producer never waits for the consumer
+            producer.join(5000);
+            Assertions.assertFalse(producer.isAlive(), policy.name());
+            Assertions.assertEquals(7, appender.getDroppedEventCount(Level.INFO), policy.name());
+            blockingStream.release();
+            String[] logs = awaitLines(blockingStream.collected, 4);
+            Assertions.assertEquals(4, logs.length, policy.name());
+            Assertions.assertTrue(logs[0].endsWith("first"));
+            String last = policy == OverflowPolicy.DROP_OLDEST ? "info-9" : "info-2";
+            Assertions.assertTrue(logs[3].endsWith(last), policy.name());
+            appender.stop();
+        }
+    }
+
+    @Test
+    public void batchAppend() throws IOException, InterruptedException, IllegalAccessException {
+        BlockingOutputStream blockingStream = new BlockingOutputStream();
+        PrintStream printStream = new PrintStream(blockingStream);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+        appender.start();
+        Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), appender, Level.TRACE);
+        logger.info("first");
+        // events pile up while the consumer is stuck on the first write
+        blockingStream.awaitEntered();
+        int events = 50;
+        for (int i = 0; i < events; i++) {
+            logger.info("batch-{}", i);
+        }
+        blockingStream.release();
+        String[] logs = awaitLines(blockingStream.collected, events + 1);
+        Assertions.assertEquals(events + 1, logs.length);
+        for (int i = 0; i < events; i++) {
+            Assertions.assertTrue(logs[i + 1].endsWith("batch-" + i));
+        }
+        // the piled up events are written as one batch
+        Assertions.assertTrue(blockingStream.writes.get() <= 4, "writes: " + blockingStream.writes.get());
+        appender.stop();
+    }
+
+    @Test
+    public void priorityLane() throws IOException, InterruptedException, IllegalAccessException {
+        BlockingOutputStream blockingStream = new BlockingOutputStream();
+        PrintStream printStream = new PrintStream(blockingStream);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+        appender.setPriorityLevel(Level.ERROR);
+        appender.setBatchSize(16);
+        appender.start();
+        Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), appender, Level.TRACE);
+        logger.info("first");
+        // a backlog builds up behind the stuck consumer
+        blockingStream.awaitEntered();
+        int events = 100;
+        for (int i = 0; i < events; i++) {
+            logger.debug("backlog-{}", i);
+            if (i == events / 2) {
+                logger.error("crash-1");
+            }
+        }
+        logger.error("crash-2");
+        blockingStream.release();
+        String[] logs = awaitLines(blockingStream.collected, events + 3);
+        Assertions.assertEquals(events + 3, logs.length);
+        Assertions.assertTrue(logs[0].endsWith("first"));
+        // errors overtake the backlog and keep their own order
+        Assertions.assertTrue(logs[1].endsWith("crash-1"));
+        Assertions.assertTrue(logs[2].endsWith("crash-2"));
+        for (int i = 0; i < events; i++) {
+            Assertions.assertTrue(logs[i + 3].endsWith("backlog-" + i));
+        }
+        appender.stop();
+    }
+
+    @Test
+    public void stopDrainsQueue() throws IOException {
+        ByteArrayOutputStream logCollectStream = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(logCollectStream);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+        appender.start();
+        Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), appender, Level.TRACE);
+        int events = 20_000;
+        for (int i = 0; i < events; i++) {
+            logger.info("drain {}", i);
+        }
+        // no waiting, stop must write all queued events
+        appender.stop();
+        logger.info("after stop");
+        Assertions.assertEquals(1, appender.getDroppedEventCount(Level.INFO));
+
+        String[] logs = logCollectStream.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator());
+        Assertions.assertEquals(events, logs.length);
+        Assertions.assertTrue(logs[logs.length - 1].endsWith("- drain " + (events - 1)));
+    }
+
+    @Test
+    public void combinerStopDrainsQueue() throws IOException {
+        ByteArrayOutputStream logCollectStream = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(logCollectStream);
+        DefaultPrintStreamAppender sink = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+        sink.setAsync(false);
+        sink.start();
+        AppenderCombiner<LogEvent> combiner = new AppenderCombiner<>();
+        combiner.setAsync(true);
+        combiner.addAppender(sink);
+        combiner.start();
+        Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), combiner, Level.TRACE);
+        int events = 20_000;
+        for (int i = 0; i < events; i++) {
+            logger.info("drain {}", i);
+        }
+        // the same order as LoggerFactory.shutdown: the combiner drains into the still running sink
+        combiner.stop();
+        sink.stop();
+
+        String[] logs = logCollectStream.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator());
+        Assertions.assertEquals(events, logs.length);
+        Assertions.assertTrue(logs[logs.length - 1].endsWith("- drain " + (events - 1)));
+    }
+
+    @Test
+    public void sharedDispatcher() throws IOException, InterruptedException, IllegalAccessException {
+        AtomicInteger formatTimes = new AtomicInteger();
+        DefaultLineLayout layout = new DefaultLineLayout() {
+            @Override
+            public void encode(LogEvent event, StringBuilder sb) {
+                formatTimes.incrementAndGet();
+                super.encode(event, sb);
+            }
+        };
+        ByteArrayOutputStream logCollectStream1 = new ByteArrayOutputStream();
+        ByteArrayOutputStream logCollectStream2 = new ByteArrayOutputStream();
+        PrintStream printStream1 = new PrintStream(logCollectStream1);
+        PrintStream printStream2 = new PrintStream(logCollectStream2);
+        AppenderCombiner<LogEvent> combiner = new AppenderCombiner<>();
+        combiner.setAsync(true);
+        for (PrintStream printStream : new PrintStream[]{ printStream1, printStream2 }) {
+            DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(layout, printStream, printStream);
+            appender.setAsync(false);
+            appender.start();
+            combiner.addAppender(appender);
+        }
+        combiner.start();
+        Logger logger = newLogger(DefaultConsoleAppenderTest.class.getCanonicalName(), combiner, Level.TRACE);
+        int events = 100;
+        for (int i = 0; i < events; i++) {
+            logger.info("shared-{}", i);
+        }
+        String[] logs1 = awaitLines(logCollectStream1, events);
+        String[] logs2 = awaitLines(logCollectStream2, events);
+        // formatted once, written by both sinks
+        Assertions.assertEquals(events, formatTimes.get());
+        Assertions.assertArrayEquals(logs1, logs2);
+        Assertions.assertEquals(events, logs1.length);
+        combiner.stop();
+    }
+
+    /**
+     * Waits until the stream holds at least the given number of complete lines.
+     */
+    private static String[] awaitLines(ByteArrayOutputStream stream, int lines) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            String content = stream.toString(StandardCharsets.UTF_8.name());
+            int complete = 0;
+            for (int index = content.indexOf(System.lineSeparator()); index >= 0; index = content.indexOf(System.lineSeparator(), index + 1)) {
+                complete++;
+            }
+            if (complete >= lines || System.nanoTime() - deadline >= 0) {
+                return content.split(System.lineSeparator());
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * A stuck console: every write blocks until released. Signals when the consumer entered its first write.
+     */
+    private static final class BlockingOutputStream extends OutputStream {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger writes = new AtomicInteger();
+        private final ByteArrayOutputStream collected = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{ (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writes.incrementAndGet();
+            collected.write(b, off, len);
+        }
+
+        private void awaitEntered() throws InterruptedException {
+            Assertions.assertTrue(entered.await(10, TimeUnit.SECONDS), "the consumer never wrote");
+        }
+
+        private void release() {
+            release.countDown();
+        }
+
+    }
+
 }
@@ -1,21 +1,39 @@
 package io.github.supervate.vlog;
 
+import io.github.supervate.vlog.appender.AsyncAppender;
 import io.github.supervate.vlog.appender.DefaultFileAppender;
+import io.github.supervate.vlog.appender.DefaultPrintStreamAppender;
+import io.github.supervate.vlog.appender.PipelinedAppender;
+import io.github.supervate.vlog.appender.RolloverGranularity;
+import io.github.supervate.vlog.appender.ShardMergeReader;
+import io.github.supervate.vlog.appender.ShardedFileAppender;
+import io.github.supervate.vlog.common.FileUtils;
 import io.github.supervate.vlog.common.ReflectUtils;
 import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.layout.DefaultLineLayout;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 
@@ -61,6 +79,417 @@ public class DefaultFileAppenderTest extends BaseLoggerTest {
         }
     }
 
+    @Test
+    public void garbageFree() throws IOException, InterruptedException, IllegalAccessException {
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        Path logPath = LOG_DIR.resolve("garbageFree");
+        Files.createDirectories(logPath);
+        DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+        defaultFileAppender.setGarbageFree(true, 1024);
+        defaultFileAppender.start();
+        Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+        logger.setGarbageFree(true);
+        Object arg1 = "arg1";
+        Object arg2 = "arg2";
+        int warmUpEvents = 100_000;
+        int events = 200_000;
+        // warm up, let the JIT compile the logging path.
+        for (int i = 0; i < warmUpEvents; i++) {
+            logger.info("garbage free {} {}", arg1, arg2);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < events; i++) {
+            logger.info("garbage free {} {}", arg1, arg2);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        System.out.printf("garbage free producer allocated: %d bytes, %.3f bytes/event%n", allocated, (double) allocated / events);
+        waitingForAsyncAppend(defaultFileAppender);
+        defaultFileAppender.stop();
+
+        // a single allocated event is more than 40 bytes, less than one byte per event is the noise of the jvm itself.
+        Assertions.assertTrue(allocated < events, "producer allocated " + allocated + " bytes");
+        Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+        String[] logs = new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8).split(System.lineSeparator());
+        Assertions.assertEquals(warmUpEvents + events, logs.length);
+        Assertions.assertTrue(logs[logs.length - 1].endsWith("- garbage free arg1 arg2"));
+    }
+
+    @Test
+    public void primitiveArguments() throws IOException, InterruptedException, IllegalAccessException {
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        Path logPath = LOG_DIR.resolve("primitiveArguments");
+        Files.createDirectories(logPath);
+        DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+        defaultFileAppender.setGarbageFree(true, 1024);
+        defaultFileAppender.start();
+        Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+        int warmUpEvents = 100_000;
+        int events = 200_000;
+        // warm up, let the JIT compile the logging path.
+        for (int i = 0; i < warmUpEvents; i++) {
+            logger.atInfo().arg(i).arg(i * 0.5).arg(1.5f).arg('c').log("primitive {} {} {} {}");
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < events; i++) {
+            // large values are never in the box cache
+            logger.atInfo().arg(1_000_000L + i).arg(i * 0.5).arg(1.5f).arg('c').log("primitive {} {} {} {}");
+            logger.atDebug().arg(i).log("disabled {}");
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        System.out.printf("primitive arguments producer allocated: %d bytes, %.3f bytes/event%n", allocated, (double) allocated / events);
+        waitingForAsyncAppend(defaultFileAppender);
+        defaultFileAppender.stop();
+
+        Assertions.assertTrue(allocated < events, "producer allocated " + allocated + " bytes");
+        Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+        String[] logs = new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8).split(System.lineSeparator());
+        Assertions.assertEquals(warmUpEvents + events, logs.length);
+        // every queued event kept its own values
+        Assertions.assertTrue(logs[warmUpEvents].endsWith("- primitive 1000000 0.0 1.5 c"), logs[warmUpEvents]);
+        Assertions.assertTrue(logs[logs.length - 1].endsWith("- primitive " + (1_000_000L + events - 1) + " " + (events - 1) * 0.5 + " 1.5 c"));
+        // the last throwable argument is still recognized
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true);
+        DefaultPrintStreamAppender printStreamAppender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+        printStreamAppender.setAsync(false);
+        printStreamAppender.start();
+        Logger capture = newLogger("capture", printStreamAppender, INFO);
+        capture.atWarn().arg(3L).arg(new IllegalStateException("boom")).log("failed {} times");
+        String captured = output.toString(StandardCharsets.UTF_8.name());
+        Assertions.assertTrue(captured.contains("- failed 3 times" + System.lineSeparator() + IllegalStateException.class.getName() + ": boom"), captured);
+        printStreamAppender.stop();
+    }
+
+    @Test
+    public void stopDrainsQueue() throws IOException, IllegalAccessException {
+        Path logPath = LOG_DIR.resolve("stopDrainsQueue");
+        Files.createDirectories(logPath);
+        DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+        defaultFileAppender.start();
+        Thread consumer = (Thread) Objects
+            .requireNonNull(ReflectUtils.getField(AsyncAppender.class, "consumer", true))
+            .get(defaultFileAppender);
+        Assertions.assertNotNull(consumer);
+        Assertions.assertTrue(consumer.isDaemon());
+        Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+        int events = 50_000;
+        for (int i = 0; i < events; i++) {
+            logger.info("drain {}", i);
+        }
+        // no waiting, stop must write all queued events
+        defaultFileAppender.stop();
+        Assertions.assertFalse(consumer.isAlive());
+        logger.info("after stop");
+        Assertions.assertEquals(1, defaultFileAppender.getDroppedEventCount(INFO));
+
+        Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+        String[] logs = new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8).split(System.lineSeparator());
+        Assertions.assertEquals(events, logs.length);
+        Assertions.assertTrue(logs[logs.length - 1].endsWith("- drain " + (events - 1)));
+    }
+
+    @Test
+    public void shardedFile() throws IOException {
+        Path logPath = LOG_DIR.resolve("shardedFile");
+        Files.createDirectories(logPath);
+        int shardCount = 3;
+        ShardedFileAppender appender = new ShardedFileAppender(
+            new DefaultLineLayout(),
+            logPath,
+            0,
+            0,
+            shardCount,
+            ShardedFileAppender.ShardKey.LOGGER
+        );
+        appender.start();
+        int loggerCount = 8;
+        int events = 200;
+        List<Logger> loggers = new ArrayList<>();
+        for (int i = 0; i < loggerCount; i++) {
+            loggers.add(newLogger("shard.logger" + i, appender, INFO));
+        }
+        for (int i = 0; i < events; i++) {
+            for (Logger logger : loggers) {
+                logger.info("seq {}", i);
+            }
+        }
+        loggers.get(0).error("failed", new IllegalStateException("boom"));
+        appender.stop();
+
+        String prefix = DefaultFileAppender.dateToLogFileName(LocalDateTime.now());
+        List<List<Path>> shardFiles = ShardMergeReader.listShardFiles(logPath, prefix);
+        Assertions.assertFalse(shardFiles.isEmpty());
+        for (List<Path> files : shardFiles) {
+            Assertions.assertTrue(files.get(0).getFileName().toString().matches(prefix + "-shard[0-2]"));
+        }
+        Assertions.assertFalse(Files.exists(logPath.resolve(prefix)));
+
+        // merged view: every event once, ordered by time, each logger in call order
+        int[] nextSeq = new int[loggerCount];
+        long lastTime = Long.MIN_VALUE;
+        int entries = 0;
+        try (ShardMergeReader reader = ShardMergeReader.open(logPath, prefix)) {
+            String entry;
+            while ((entry = reader.readEntry()) != null) {
+                entries++;
+                long time = ShardMergeReader.BRACKETED_TIMESTAMP.applyAsLong(entry);
+                Assertions.assertTrue(time >= lastTime);
+                lastTime = time;
+                if (entry.contains("- failed")) {
+                    Assertions.assertTrue(entry.contains("IllegalStateException: boom"));
+                    Assertions.assertTrue(entry.split(System.lineSeparator()).length > 1);
+                    continue;
+                }
+                int loggerIndex = Integer.parseInt(entry.replaceAll(".*\\[shard\\.logger(\\d+)].*", "$1"));
+                Assertions.assertTrue(entry.endsWith("- seq " + nextSeq[loggerIndex]++), entry);
+            }
+        }
+        Assertions.assertEquals(loggerCount * events + 1, entries);
+    }
+
+    @Test
+    public void pipelinedFile() throws IOException, InterruptedException {
+        for (PipelinedAppender.FormatMode mode : PipelinedAppender.FormatMode.values()) {
+            Path logPath = LOG_DIR.resolve("pipelinedFile-" + mode);
+            Files.createDirectories(logPath);
+            DefaultFileAppender fileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+            fileAppender.setAsync(false);
+            // a small ring makes producers wrap around and wait for the writer
+            PipelinedAppender appender = new PipelinedAppender(fileAppender, mode, 3, 64);
+            appender.start();
+            int threads = 4;
+            int events = 2000;
+            List<Thread> producers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int threadIndex = t;
+                Logger logger = newLogger("pipeline.logger" + t, appender, INFO);
+                logger.setGarbageFree(t % 2 == 0);
+                producers.add(new Thread(() -> {
+                    for (int i = 0; i < events; i++) {
+                        logger.info("t{} seq {}", threadIndex, i);
+                    }
+                    if (threadIndex == 0) {
+                        logger.error("failed", new IllegalStateException("boom"));
+                    }
+                }, "pipeline-producer-" + t));
+            }
+            producers.forEach(Thread::start);
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            appender.stop();
+            Assertions.assertFalse(fileAppender.started());
+            // the sink must be written by the pipeline writer only
+            DefaultFileAppender asyncFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new PipelinedAppender(asyncFileAppender, mode, 1, 16));
+            asyncFileAppender.stop();
+
+            // one file, every event once, each producer in call order
+            Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+            String content = new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8);
+            Assertions.assertTrue(content.contains("IllegalStateException: boom"));
+            int[] nextSeq = new int[threads];
+            int lines = 0;
+            for (String line : content.split(System.lineSeparator())) {
+                int index = line.indexOf("- t");
+                if (index < 0) {
+                    continue;
+                }
+                lines++;
+                String[] parts = line.substring(index + 3).split(" seq ");
+                int threadIndex = Integer.parseInt(parts[0]);
+                Assertions.assertEquals(nextSeq[threadIndex]++, Integer.parseInt(parts[1]), mode.name());
+            }
+            Assertions.assertEquals(threads * events, lines, mode.name());
+        }
+    }
+
+    @Test
+    public void pipelinedReentrantLogging() throws IOException {
+        for (PipelinedAppender.FormatMode mode : PipelinedAppender.FormatMode.values()) {
+            Path logPath = LOG_DIR.resolve("pipelinedReentrantLogging-" + mode);
+            Files.createDirectories(logPath);
+            DefaultFileAppender fileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+            fileAppender.setAsync(false);
+            // the smallest ring, so a nested call regularly finds it full
+            PipelinedAppender appender = new PipelinedAppender(fileAppender, mode, 2, 2);
+            appender.start();
+            Logger logger = newLogger("pipeline.reentrant", appender, INFO);
+            int events = 500;
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+                for (int i = 0; i < events; i++) {
+                    int index = i;
+                    Object argument = new Object() {
+                        @Override
+                        public String toString() {
+                            logger.info("nested {}", index);
+                            return "arg" + index;
+                        }
+                    };
+                    logger.info("outer {} {}", index, argument);
+                }
+                appender.stop();
+            }, mode.name());
+
+            // outer events are complete and in order, nested events are written or counted as dropped
+            Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+            int outer = 0;
+            int nested = 0;
+            for (String line : Files.readAllLines(logFile, StandardCharsets.UTF_8)) {
+                if (line.contains("- outer ")) {
+                    Assertions.assertTrue(line.endsWith("- outer " + outer + " arg" + outer), line);
+                    outer++;
+                } else if (line.contains("- nested ")) {
+                    nested++;
+                }
+            }
+            Assertions.assertEquals(events, outer, mode.name());
+            Assertions.assertEquals(events, nested + appender.getDroppedEventCount(), mode.name());
+        }
+    }
+
+    @Test
+    public void bufferedFlush() throws IOException, IllegalAccessException, InterruptedException {
+        Path logPath = LOG_DIR.resolve("bufferedFlush");
+        Files.createDirectories(logPath);
+        DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+        defaultFileAppender.setWriteBufferSize(1024 * 1024);
+        defaultFileAppender.setImmediateFlush(false);
+        defaultFileAppender.setFlushIntervalMillis(300);
+        defaultFileAppender.setFlushLevel(Level.ERROR);
+        defaultFileAppender.start();
+        Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+        Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+
+        for (int i = 0; i < 10; i++) {
+            logger.info("buffered {}", i);
+        }
+        waitingForAsyncAppend(defaultFileAppender);
+        // held in the write buffer
+        Assertions.assertEquals(0, Files.size(logFile));
+
+        // error flushes immediately, together with the buffered events
+        logger.error("error");
+        waitingForAsyncAppend(defaultFileAppender);
+        Assertions.assertEquals(11, Files.readAllLines(logFile, StandardCharsets.UTF_8).size());
+
+        // flushed after the max delay even without new events
+        logger.info("delayed");
+        waitingForAsyncAppend(defaultFileAppender);
+        Assertions.assertEquals(11, Files.readAllLines(logFile, StandardCharsets.UTF_8).size());
+        Thread.sleep(1000);
+        Assertions.assertEquals(12, Files.readAllLines(logFile, StandardCharsets.UTF_8).size());
+        defaultFileAppender.stop();
+    }
+
+    @Test
+    public void memoryMapped() throws IOException, IllegalAccessException {
+        Path logPath = LOG_DIR.resolve("memoryMapped");
+        Files.createDirectories(logPath);
+        Path logFile = logPath.resolve(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()));
+        int events = 20_000;
+        for (int round = 1; round <= 2; round++) {
+            DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+            defaultFileAppender.setMemoryMapped(true);
+            // small region, force remapping
+            defaultFileAppender.setMappedRegionSize(64 * 1024);
+            defaultFileAppender.start();
+            Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+            for (int i = 0; i < events; i++) {
+                logger.info("mapped {} {}", round, i);
+            }
+            defaultFileAppender.stop();
+
+            // truncated to the real length, the second round appends after the first one
+            byte[] bytes = Files.readAllBytes(logFile);
+            Assertions.assertNotEquals(0, bytes[bytes.length - 1]);
+            String[] logs = new String(bytes, StandardCharsets.UTF_8).split(System.lineSeparator());
+            Assertions.assertEquals(events * round, logs.length);
+            Assertions.assertTrue(logs[events - 1].endsWith("- mapped 1 " + (events - 1)));
+            Assertions.assertTrue(logs[logs.length - 1].endsWith("- mapped " + round + " " + (events - 1)));
+        }
+        // regions are released before remapping and truncating instead of waiting for the GC
+        try (FileChannel fileChannel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            Assertions.assertTrue(FileUtils.unmap(fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, 16)));
+        }
+    }
+
+    /**
+     * FileChannel写入与内存映射写入的吞吐对比,-Dvt.vlog.benchmark=true时运行.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "vt.vlog.benchmark", matches = "true")
+    public void memoryMappedBenchMark() throws IOException, IllegalAccessException, InterruptedException {
+        int events = 2_000_000;
+        for (int round = 0; round < 3; round++) {
+            for (boolean memoryMapped : new boolean[]{ false, true }) {
+                Path logPath = LOG_DIR.resolve("memoryMappedBenchMark-" + memoryMapped + "-" + round);
+                Files.createDirectories(logPath);
+                DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+                defaultFileAppender.setMemoryMapped(memoryMapped);
+                defaultFileAppender.start();
+                Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+                long start = System.nanoTime();
+                for (int i = 0; i < events; i++) {
+                    logger.info("benchmark {} {}", i, memoryMapped);
+                }
+                defaultFileAppender.stop();
+                long elapsed = System.nanoTime() - start;
+                System.out.printf(
+                    "%-14s throughput: %6.2f M events/s%n",
+                    memoryMapped ? "mmap" : "FileChannel",
+                    events * 1000.0 / elapsed
+                );
+            }
+        }
+    }
+
+    @Test
+    public void rolloverGranularity() throws IOException, IllegalAccessException, InterruptedException {
+        LocalDateTime date = LocalDateTime.of(2024, 4, 27, 10, 5, 30);
+        Assertions.assertEquals("2024-04-27", RolloverGranularity.DAY.format(date));
+        Assertions.assertEquals("2024-04-27T10", RolloverGranularity.HOUR.format(date));
+        Assertions.assertEquals("2024-04-27T1005", RolloverGranularity.MINUTE.format(date));
+        ZoneId zoneId = ZoneId.systemDefault();
+        long millis = date.atZone(zoneId).toInstant().toEpochMilli();
+        Assertions.assertEquals(
+            LocalDateTime.of(2024, 4, 27, 10, 6).atZone(zoneId).toInstant().toEpochMilli(),
+            RolloverGranularity.MINUTE.nextBoundary(millis, zoneId)
+        );
+        Assertions.assertEquals(
+            LocalDateTime.of(2024, 4, 28, 0, 0).atZone(zoneId).toInstant().toEpochMilli(),
+            RolloverGranularity.DAY.nextBoundary(millis, zoneId)
+        );
+
+        Path logPath = LOG_DIR.resolve("rolloverGranularity");
+        Files.createDirectories(logPath);
+        // files of other periods and granularities must not affect the index
+        String hourPrefix = RolloverGranularity.HOUR.format(LocalDateTime.now());
+        Files.createFile(logPath.resolve(hourPrefix + "-x1"));
+        Files.createFile(logPath.resolve(hourPrefix + "00"));
+        DefaultFileAppender defaultFileAppender = new DefaultFileAppender(new DefaultLineLayout(), logPath, 0);
+        defaultFileAppender.setRolloverGranularity(RolloverGranularity.HOUR);
+        defaultFileAppender.start();
+        Logger logger = newLogger(DefaultFileAppenderTest.class.getCanonicalName(), defaultFileAppender, INFO);
+        logger.info("hour");
+        waitingForAsyncAppend(defaultFileAppender);
+        // period boundary reached: same prefix continues with the next index
+        ReflectUtils.setFieldValue(defaultFileAppender, "nextRolloverMillis", 0L, true);
+        logger.info("next");
+        waitingForAsyncAppend(defaultFileAppender);
+        defaultFileAppender.stop();
+        String prefix = ReflectUtils.getFieldValue(defaultFileAppender, "filePrefix", true);
+        Assertions.assertTrue(Files.exists(logPath.resolve(prefix)));
+        Assertions.assertTrue(Files.exists(logPath.resolve(prefix + "-1")));
+        Assertions.assertTrue(prefix.startsWith(DefaultFileAppender.dateToLogFileName(LocalDateTime.now()) + "T"));
+    }
+
     @Test
     public void cleanExpiredFile() throws IOException, InterruptedException, ExecutionException {
         LocalDateTime now = LocalDateTime.now();
@@ -4,25 +4,60 @@ import io.github.supervate.vlog.appender.Appender;
 import io.github.supervate.vlog.appender.AppenderCombiner;
 import io.github.supervate.vlog.appender.DefaultFileAppender;
 import io.github.supervate.vlog.appender.DefaultPrintStreamAppender;
+import io.github.supervate.vlog.common.CachedClock;
+import io.github.supervate.vlog.common.Clock;
 import io.github.supervate.vlog.common.Constants;
 import io.github.supervate.vlog.common.ReflectUtils;
+import io.github.supervate.vlog.common.ThrowableUtils;
+import io.github.supervate.vlog.event.KeyValue;
+import io.github.supervate.vlog.event.Level;
 import io.github.supervate.vlog.event.LogEvent;
+import io.github.supervate.vlog.event.Marker;
+import io.github.supervate.vlog.event.MutableLogEvent;
+import io.github.supervate.vlog.filter.FilterChain;
+import io.github.supervate.vlog.filter.FilterReply;
+import io.github.supervate.vlog.filter.LevelFilter;
+import io.github.supervate.vlog.filter.LoggerNameFilter;
+import io.github.supervate.vlog.filter.MarkerFilter;
+import io.github.supervate.vlog.filter.PredicateFilter;
+import io.github.supervate.vlog.filter.RateLimitFilter;
+import io.github.supervate.vlog.filter.RateLimiter;
+import io.github.supervate.vlog.filter.RepeatSuppressor;
+import io.github.supervate.vlog.layout.CachedTimestampFormatter;
 import io.github.supervate.vlog.layout.DefaultJsonLayout;
 import io.github.supervate.vlog.layout.DefaultLineLayout;
+import io.github.supervate.vlog.layout.JsonEscaper;
 import io.github.supervate.vlog.layout.Layout;
+import io.github.supervate.vlog.layout.MessageTemplate;
+import io.github.supervate.vlog.layout.MessageTemplateCache;
+import io.github.supervate.vlog.layout.PatternLayout;
+import io.github.supervate.vlog.layout.StackTraceRenderer;
+import com.sun.management.ThreadMXBean;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static io.github.supervate.vlog.common.ReflectUtils.getFieldValue;
 import static io.github.supervate.vlog.event.Level.INFO;
@@ -58,6 +93,39 @@ public class LoggerTest extends BaseLoggerTest {
 
     }
 
+    @Test
+    public void messageTemplateCache() throws IllegalAccessException {
+        MessageTemplateCache cache = new MessageTemplateCache(16);
+        Assertions.assertEquals(16, cache.capacity());
+        String template = "user {} logged in from {}";
+        MessageTemplate parsed = cache.get(template);
+        Assertions.assertEquals(2, parsed.getPlaceholderCount());
+        Assertions.assertSame(parsed, cache.get(template));
+        // equal but not identical template hits too
+        Assertions.assertSame(parsed, cache.get(new String(template.toCharArray())));
+        Assertions.assertEquals(2, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+        StringBuilder sb = new StringBuilder();
+        parsed.format(new Object[]{ "tom", "127.0.0.1", "ignored" }, 2, sb);
+        Assertions.assertEquals("user tom logged in from 127.0.0.1", sb.toString());
+        sb.setLength(0);
+        parsed.format(new Object[]{ 7L }, 1, sb);
+        Assertions.assertEquals("user 7 logged in from {}", sb.toString());
+        // dynamic messages only replace slots, the table never grows
+        for (int i = 0; i < 10_000; i++) {
+            cache.get("dynamic " + i + " {}");
+        }
+        Object[] table = (Object[]) getFieldValue(cache, "table", true);
+        Assertions.assertEquals(16, table.length);
+        Assertions.assertTrue(cache.getHitRate() < 0.01);
+        cache.resetStatistics();
+        Assertions.assertEquals(0, cache.getHitRate());
+        // disabled cache always parses
+        MessageTemplateCache disabled = new MessageTemplateCache(0);
+        Assertions.assertNotSame(disabled.get(template), disabled.get(template));
+        Assertions.assertEquals(2, disabled.getMissCount());
+    }
+
     private static void checkFormatMessage(Layout<?> layout, String expected, String message, Object... args) {
         String formated = layout.formatMessage(message, args);
         System.out.printf("message: %s, formated: %s, args: %s%n", message, formated, Arrays.toString(args));
@@ -72,11 +140,7 @@ public class LoggerTest extends BaseLoggerTest {
         DefaultLineLayout defaultLayout = new DefaultLineLayout();
         Logger logger = newLogger(LoggerTest.class.getCanonicalName(), null, INFO);
         LogEvent logEvent = buildLogEvent(logger, "test", new Object[0]);
-        String timeStr = buildItem(
-            LocalDateTime
-                .ofInstant(Instant.ofEpochMilli(logEvent.getEventTime()), ZoneId.systemDefault())
-                .toString()
-        );
+        String timeStr = buildItem(getLogEventTimeStr(logEvent));
         // [2024-04-27T17:37:22.166] [main] [INFO] [com.github.logger.LoggerTest] - test
         String expected = timeStr + " [main] [INFO] [" + LoggerTest.class.getCanonicalName() + "] - test" + System.lineSeparator();
         String format = defaultLayout.format(logEvent);
@@ -87,6 +151,106 @@ public class LoggerTest extends BaseLoggerTest {
         );
     }
 
+    @Test
+    public void patternLayout() {
+        Logger logger = newLogger("io.github.supervate.vlog.layout.PatternLayout", null, INFO);
+        LogEvent logEvent = buildLogEvent(logger, "pattern {}", new Object[]{ 1 });
+        // the default pattern renders the same as the default line layout
+        Assertions.assertEquals(new DefaultLineLayout().format(logEvent), new PatternLayout().format(logEvent));
+        String time = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
+            .format(LocalDateTime.ofInstant(Instant.ofEpochMilli(logEvent.getEventTime()), ZoneId.systemDefault()));
+        PatternLayout layout = new PatternLayout("%d{HH:mm:ss.SSS} %t %-5level %logger{20} %msg%n");
+        Assertions.assertEquals(time + " main INFO  i.g.s.v.l.PatternLayout pattern 1" + System.lineSeparator(), layout.format(logEvent));
+        // padding, truncation and literal percent
+        Assertions.assertEquals("[ INFO] [Layout] [io.g] 100%", new PatternLayout("[%5p] [%.6c] [%.-4c] 100%%").format(logEvent));
+        Assertions.assertEquals("io.github.supervate.vlog.layout.PatternLayout", new PatternLayout("%c{100}").format(logEvent));
+        Assertions.assertEquals("i.g.s.vlog.layout.PatternLayout", new PatternLayout("%c{31}").format(logEvent));
+        // throwable goes before the trailing new line unless placed explicitly
+        LogEvent errorEvent = buildLogEvent(logger, "failed", new Object[]{ new IllegalStateException("boom") });
+        String formatted = new PatternLayout("%m%n").format(errorEvent);
+        Assertions.assertTrue(formatted.startsWith("failed" + System.lineSeparator() + IllegalStateException.class.getName() + ": boom"));
+        Assertions.assertTrue(formatted.endsWith(System.lineSeparator()));
+        Assertions.assertEquals("failed", new PatternLayout("%m").format(buildLogEvent(logger, "failed", new Object[0])));
+        for (String invalid : new String[]{ "%", "%unknown", "%d{HH", "%c{x}", "%.x" }) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> new PatternLayout(invalid), invalid);
+        }
+    }
+
+    @Test
+    public void stackTraceRenderer() {
+        String lineSeparator = System.lineSeparator();
+        IllegalStateException cause = new IllegalStateException("root cause");
+        RuntimeException throwable = new RuntimeException("storm", cause);
+        String full = ThrowableUtils.throwableToStr(throwable);
+        Assertions.assertTrue(full.startsWith(RuntimeException.class.getName() + ": storm" + lineSeparator + "\tat "));
+        Assertions.assertTrue(full.contains(lineSeparator + "Caused by: " + IllegalStateException.class.getName() + ": root cause"));
+        Assertions.assertTrue(full.contains("common frames omitted"));
+        // depth limit and package filtering
+        StringBuilder sb = new StringBuilder();
+        ThrowableUtils.appendThrowable(throwable, sb, 1, null);
+        String limited = sb.toString();
+        // one frame for the exception and one for its cause
+        Assertions.assertEquals(1, countMatches(limited.split("Caused by")[0], "\tat "));
+        Assertions.assertEquals(1, countMatches(limited.split("Caused by")[1], "\tat "));
+        Assertions.assertTrue(limited.contains("more frames omitted"));
+        sb.setLength(0);
+        ThrowableUtils.appendThrowable(throwable, sb, 0, new String[]{ "org.junit.", "java.", "jdk.", "sun." });
+        String filtered = sb.toString();
+        Assertions.assertFalse(filtered.contains("\tat org.junit."));
+        Assertions.assertTrue(filtered.contains("filtered frames"));
+        Assertions.assertTrue(filtered.contains("\tat " + LoggerTest.class.getName()));
+        // cached rendering is reused
+        StackTraceRenderer renderer = new StackTraceRenderer(0, null, 16, false);
+        Assertions.assertEquals(full, renderer.render(throwable));
+        Assertions.assertEquals(full, renderer.render(throwable));
+        // repeats are replaced by a reference to the first full stack
+        StackTraceRenderer dedup = new StackTraceRenderer(0, null, 16, true);
+        String first = "";
+        String repeated = "";
+        for (int i = 0; i < 3; i++) {
+            RuntimeException same = newStormException();
+            repeated = dedup.render(same);
+            if (i == 0) {
+                first = repeated;
+            }
+        }
+        Matcher matcher = Pattern.compile("\\[stack #([0-9a-f]+)]").matcher(first);
+        Assertions.assertTrue(matcher.find(), first);
+        Assertions.assertTrue(first.contains(lineSeparator + "\tat "));
+        Assertions.assertEquals(
+            RuntimeException.class.getName() + ": storm (same stack as #" + matcher.group(1) + ", seen 3 times)",
+            repeated
+        );
+        // a different stack is rendered in full
+        Assertions.assertTrue(dedup.render(throwable).contains(lineSeparator + "\tat "));
+    }
+
+    private static RuntimeException newStormException() {
+        return new RuntimeException("storm");
+    }
+
+    private static int countMatches(String text, String part) {
+        return text.split(Pattern.quote(part), -1).length - 1;
+    }
+
+    @Test
+    public void cachedTimestampFormatter() {
+        String[] patterns = { CachedTimestampFormatter.DEFAULT_PATTERN, "HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss", "ss.SSS'Z'", "HH:mm:ss.SSSSSS" };
+        long start = LocalDateTime.of(2024, 4, 27, 23, 59, 58).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (String pattern : patterns) {
+            CachedTimestampFormatter formatter = new CachedTimestampFormatter(pattern);
+            DateTimeFormatter expectedFormatter = DateTimeFormatter.ofPattern(pattern);
+            // cross second/minute/day boundaries, then go back in time
+            long[] times = { start, start + 1, start + 999, start + 1000, start + 2001, start + 65_432, start - 1, start + 7 };
+            for (long time : times) {
+                String expected = expectedFormatter.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()));
+                Assertions.assertEquals(expected, formatter.format(time));
+            }
+        }
+        Clock cachedClock = CachedClock.cached();
+        Assertions.assertTrue(Math.abs(System.currentTimeMillis() - cachedClock.currentTimeMillis()) < 1000);
+    }
+
     @Test
     public void jsonLayout() {
         String loggerName = LoggerTest.class.getCanonicalName();
@@ -95,7 +259,7 @@ public class LoggerTest extends BaseLoggerTest {
 
         LogEvent logEvent = buildLogEvent(logger, "test", new Object[0]);
         // {"time":"2024-04-27T17:37:22.166","thread":"main","level":"INFO","loggerName":"com.github.logger.LoggerTest","message":"test"}
-        String expected = "{\"eventTime\":\"" + getLogEventTimeStr(logEvent) + "\",\"threadName\":\"main\",\"level\":\"INFO\",\"loggerName\":\"" + loggerName + "\",\"message\":\"test\"}";
+        String expected = "{\"eventTime\":\"" + getLogEventTimeStr(logEvent) + "\",\"threadName\":\"main\",\"level\":\"INFO\",\"loggerName\":\"" + loggerName + "\",\"message\":\"test\"}\n";
         String format = jsonLayout.format(logEvent);
         System.out.printf("expected: %s %nformat: %s %n", expected, format);
         Assertions.assertEquals(
@@ -103,6 +267,428 @@ public class LoggerTest extends BaseLoggerTest {
             format
         );
 
+        // quotes, backslashes and control characters are escaped, clean runs are kept as is
+        LogEvent escapeEvent = buildLogEvent(logger, "say \"{}\"\n\tpath=C:\\{}", new Object[]{ "hi\u0001", "中文" });
+        String escaped = new DefaultJsonLayout(true).format(escapeEvent);
+        Assertions.assertEquals(
+            "{\"eventTime\":" + escapeEvent.getEventTime() + ",\"threadName\":\"main\",\"level\":\"INFO\",\"loggerName\":\"" + loggerName
+                + "\",\"message\":\"say \\\"hi\\u0001\\\"\\n\\tpath=C:\\\\中文\"}\n",
+            escaped
+        );
+        StringBuilder sb = new StringBuilder("prefix \"");
+        JsonEscaper.escapeInPlace(sb, 7);
+        Assertions.assertEquals("prefix \\\"", sb.toString());
+
+        // key values become typed fields
+        LogEvent keyValueEvent = buildLogEvent(
+            logger,
+            "order {} paid {}",
+            new Object[]{ KeyValue.of("orderId", 42L), KeyValue.of("amount", 9.5), KeyValue.of("note", "a\"b"), KeyValue.of("vip", true) }
+        );
+        String keyValues = new DefaultJsonLayout(true).format(keyValueEvent);
+        Assertions.assertTrue(
+            keyValues.endsWith("\"message\":\"order orderId=42 paid amount=9.5\",\"orderId\":42,\"amount\":9.5,\"note\":\"a\\\"b\",\"vip\":true}\n"),
+            keyValues
+        );
+        // the exception stack trace is escaped too
+        LogEvent errorEvent = buildLogEvent(logger, "failed", new Object[]{ new IllegalStateException("bad \"state\"") });
+        String error = jsonLayout.format(errorEvent);
+        Assertions.assertTrue(error.contains("\"exception\":\"java.lang.IllegalStateException: bad \\\"state\\\""), error);
+        Assertions.assertEquals(1, error.split("\n").length);
+
+    }
+
+    @Test
+    public void disabledLevelAllocation() {
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        // appender is null, any enabled call will fail with NPE.
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), null, Level.ERROR);
+        Object arg1 = "arg1";
+        Object arg2 = "arg2";
+        Object arg3 = "arg3";
+        RuntimeException throwable = new RuntimeException();
+        // warm up, let the JIT compile the disabled path.
+        makeDisabledLogs(logger, 100_000, arg1, arg2, arg3, throwable);
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        int times = 1_000_000;
+        makeDisabledLogs(logger, times, arg1, arg2, arg3, throwable);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+        System.out.printf("disabled level calls allocated: %d bytes%n", allocated);
+        // a single allocated event per call would be far more than this, the rest is noise of the jvm itself.
+        Assertions.assertTrue(allocated < times, "disabled level calls allocated " + allocated + " bytes");
+    }
+
+    private static void makeDisabledLogs(Logger logger, int times, Object arg1, Object arg2, Object arg3, Throwable throwable) {
+        for (int i = 0; i < times; i++) {
+            logger.trace("trace");
+            logger.trace("trace {}", arg1);
+            logger.debug("debug {} {}", arg1, arg2);
+            logger.info("info {} {} {}", arg1, arg2, arg3);
+            logger.warn("warn", throwable);
+            if (logger.isDebugEnabled()) {
+                logger.debug("debug {} {} {} {}", arg1, arg2, arg3, throwable);
+            }
+        }
+    }
+
+    @Test
+    public void layoutEncodeAllocation() {
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), null, INFO);
+        MutableLogEvent event = new MutableLogEvent(2);
+        event.set(INFO, "main", System.currentTimeMillis(), logger, "encode {} {}");
+        event.setArgument(0, "arg1");
+        event.setArgument(1, 42);
+        List<Layout<LogEvent>> layouts = Arrays.asList(new DefaultLineLayout(), new DefaultJsonLayout());
+        StringBuilder sb = new StringBuilder(1024);
+        for (Layout<LogEvent> layout : layouts) {
+            // the reused builder gets the same content as format
+            sb.setLength(0);
+            layout.encode(event, sb);
+            Assertions.assertEquals(layout.format(event), sb.toString());
+            // warm up, let the JIT compile the encode path.
+            encodeEvents(layout, event, sb, 100_000);
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            int times = 100_000;
+            encodeEvents(layout, event, sb, times);
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            System.out.printf("%s encode allocated: %d bytes%n", layout.getClass().getSimpleName(), allocated);
+            Assertions.assertTrue(allocated < times, layout.getClass().getSimpleName() + " encode allocated " + allocated + " bytes");
+        }
+        // a layout only implementing format still works through encode
+        Layout<LogEvent> formatOnly = new Layout<LogEvent>() {
+            @Override
+            public String format(LogEvent e) {
+                return e.getMessage();
+            }
+        };
+        sb.setLength(0);
+        formatOnly.encode(event, sb);
+        Assertions.assertEquals("encode {} {}", sb.toString());
+    }
+
+    private static void encodeEvents(Layout<LogEvent> layout, LogEvent event, StringBuilder sb, int times) {
+        for (int i = 0; i < times; i++) {
+            sb.setLength(0);
+            layout.encode(event, sb);
+        }
+    }
+
+    @Test
+    public void rateLimitAndRepeatSuppression() throws UnsupportedEncodingException, InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new PatternLayout("%level %msg%n"), printStream, printStream);
+        appender.setAsync(false);
+        appender.start();
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), appender, INFO);
+
+        // a token bucket per template, the burst passes within the first second
+        RateLimitFilter rateLimitFilter = new RateLimitFilter(0.001, 3, RateLimitFilter.Key.TEMPLATE);
+        logger.setRateLimitFilter(rateLimitFilter);
+        for (int i = 0; i < 10; i++) {
+            logger.info("first {}", i);
+            logger.warn("second {}", i);
+        }
+        Assertions.assertEquals(
+            Arrays.asList("INFO first 0", "WARN second 0", "INFO first 1", "WARN second 1", "INFO first 2", "WARN second 2"),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+        Assertions.assertEquals(14, rateLimitFilter.getDeniedCount());
+        // denied calls are checked before any event is built
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isThreadAllocatedMemorySupported()) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+            Object arg = "arg";
+            for (int i = 0; i < 100_000; i++) {
+                logger.info("first {}", arg);
+            }
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            int times = 100_000;
+            for (int i = 0; i < times; i++) {
+                logger.info("first {}", arg);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            Assertions.assertTrue(allocated < times, "rate limited calls allocated " + allocated + " bytes");
+        }
+        RateLimitFilter perLogger = new RateLimitFilter(0.001, 2, RateLimitFilter.Key.LOGGER);
+        Assertions.assertTrue(perLogger.tryAcquire(logger, "a"));
+        Assertions.assertTrue(perLogger.tryAcquire(logger, "b"));
+        Assertions.assertFalse(perLogger.tryAcquire(logger, "c"));
+        Assertions.assertTrue(new RateLimiter(1_000_000, 1).tryAcquire());
+        logger.setRateLimitFilter(null);
+
+        // identical consecutive messages collapse into a summary
+        output.reset();
+        logger.setRepeatSuppressor(new RepeatSuppressor(1, 0));
+        for (int i = 0; i < 5; i++) {
+            logger.warn("same {}", "arg");
+        }
+        logger.info("other");
+        logger.info("other");
+        logger.error("other");
+        Assertions.assertEquals(
+            Arrays.asList("WARN same arg", "WARN same arg", "WARN last message repeated 3 times", "INFO other", "INFO other", "ERROR other"),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+
+        // messages differing only in their arguments are not repeats, including primitive builder arguments
+        output.reset();
+        logger.setRepeatSuppressor(new RepeatSuppressor(0, 0));
+        logger.setGarbageFree(true);
+        for (int i = 0; i < 3; i++) {
+            logger.info("user {} logged in", i);
+            logger.atInfo().arg((long) i).log("id {}");
+            logger.atInfo().arg((long) i).log("id {}");
+        }
+        logger.setGarbageFree(false);
+        logger.flushRepeats();
+        Assertions.assertEquals(
+            Arrays.asList(
+                "INFO user 0 logged in", "INFO id 0", "INFO last message repeated 1 times",
+                "INFO user 1 logged in", "INFO id 1", "INFO last message repeated 1 times",
+                "INFO user 2 logged in", "INFO id 2", "INFO last message repeated 1 times"
+            ),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+
+        // template matching ignores the arguments
+        output.reset();
+        logger.setRepeatSuppressor(new RepeatSuppressor(0, 0, RepeatSuppressor.Match.TEMPLATE));
+        for (int i = 0; i < 3; i++) {
+            logger.info("user {} logged in", i);
+        }
+        logger.info("other");
+        Assertions.assertEquals(
+            Arrays.asList("INFO user 0 logged in", "INFO last message repeated 2 times", "INFO other"),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+
+        // a storm followed by silence is reported once its window expires, or when flushed at shutdown
+        output.reset();
+        logger.setRepeatSuppressor(new RepeatSuppressor(0, 1));
+        for (int i = 0; i < 3; i++) {
+            logger.warn("storm");
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!output.toString(StandardCharsets.UTF_8.name()).contains("repeated") && System.nanoTime() < deadline) {
+            Thread.sleep(2);
+            logger.flushRepeats(false);
+        }
+        logger.setRepeatSuppressor(new RepeatSuppressor(0, 0));
+        for (int i = 0; i < 4; i++) {
+            logger.error("quiet");
+        }
+        logger.flushRepeats(false);
+        logger.flushRepeats();
+        logger.flushRepeats();
+        Assertions.assertEquals(
+            Arrays.asList("WARN storm", "WARN last message repeated 2 times", "ERROR quiet", "ERROR last message repeated 3 times"),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+        logger.setRepeatSuppressor(null);
+        appender.stop();
+    }
+
+    @Test
+    public void filterChain() throws UnsupportedEncodingException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new PatternLayout("%level %msg%n"), printStream, printStream);
+        appender.setAsync(false);
+        appender.start();
+        String name = LoggerTest.class.getCanonicalName();
+        Logger logger = newLogger(name, appender, INFO);
+        Logger mutedLogger = newLogger(name + ".muted", appender, Level.TRACE);
+        Marker audit = Marker.get("audit");
+        FilterChain chain = FilterChain.of(
+            LoggerNameFilter.deny(name + ".muted"),
+            new LevelFilter(Level.ERROR, FilterReply.ACCEPT, FilterReply.NEUTRAL),
+            new MarkerFilter(audit, FilterReply.ACCEPT, FilterReply.NEUTRAL),
+            new PredicateFilter((loggerName, level, template) -> template != null && template.startsWith("noisy"), FilterReply.DENY, FilterReply.NEUTRAL)
+        );
+        logger.setFilterChain(chain);
+        mutedLogger.setFilterChain(chain);
+
+        logger.debug("plain debug");
+        logger.atDebug().marker(audit).log("audited debug");
+        logger.info("noisy {}", 1);
+        logger.info("kept");
+        logger.error("noisy error");
+        mutedLogger.error("muted error");
+        mutedLogger.atError().marker(audit).log("muted audit");
+        Assertions.assertEquals(
+            Arrays.asList("DEBUG audited debug", "INFO kept", "ERROR noisy error"),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+        Assertions.assertFalse(logger.isDebugEnabled());
+        Assertions.assertTrue(logger.isInfoEnabled());
+        Assertions.assertFalse(mutedLogger.isErrorEnabled());
+        Assertions.assertTrue(Marker.get("audit") == audit);
+
+        // the cached mask follows level changes
+        logger.setLevel(Level.DEBUG);
+        Assertions.assertTrue(logger.isDebugEnabled());
+        logger.setLevel(null);
+
+        // filtered calls never build an event
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (threadMXBean.isThreadAllocatedMemorySupported()) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+            Object arg = "arg";
+            for (int i = 0; i < 100_000; i++) {
+                logger.info("noisy {}", arg);
+                mutedLogger.info("muted {}", arg);
+            }
+            long threadId = Thread.currentThread().getId();
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            int times = 100_000;
+            for (int i = 0; i < times; i++) {
+                logger.info("noisy {}", arg);
+                mutedLogger.info("muted {}", arg);
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            Assertions.assertTrue(allocated < times, "filtered calls allocated " + allocated + " bytes");
+        }
+        appender.stop();
+    }
+
+    @Test
+    public void hierarchicalLevel() {
+        Logger parent = LoggerFactory.logger("vlog.test.hierarchy");
+        Logger child = LoggerFactory.logger("vlog.test.hierarchy.db");
+        Logger grandChild = LoggerFactory.logger("vlog.test.hierarchy.db.Dao");
+        Logger sibling = LoggerFactory.logger("vlog.test.hierarchyOther");
+        try {
+            LoggerFactory.setLevel("vlog.test.hierarchy", Level.ERROR);
+            Assertions.assertEquals(Level.ERROR, parent.getLevel());
+            Assertions.assertEquals(Level.ERROR, child.getLevel());
+            Assertions.assertEquals(Level.ERROR, grandChild.getLevel());
+            Assertions.assertNotEquals(Level.ERROR, sibling.getLevel());
+
+            // the nearest configured prefix wins
+            child.setLevel(Level.DEBUG);
+            Assertions.assertEquals(Level.ERROR, parent.getLevel());
+            Assertions.assertEquals(Level.DEBUG, child.getLevel());
+            Assertions.assertEquals(Level.DEBUG, grandChild.getLevel());
+            Assertions.assertTrue(grandChild.isDebugEnabled());
+            Assertions.assertFalse(grandChild.isTraceEnabled());
+
+            // remove config, inherit from parent again
+            LoggerFactory.setLevel("vlog.test.hierarchy.db", null);
+            Assertions.assertEquals(Level.ERROR, grandChild.getLevel());
+            // logger created after config
+            Assertions.assertEquals(Level.ERROR, LoggerFactory.logger("vlog.test.hierarchy.cache").getLevel());
+        } finally {
+            LoggerFactory.setLevel("vlog.test.hierarchy", null);
+            LoggerFactory.setLevel("vlog.test.hierarchy.db", null);
+        }
+        Assertions.assertEquals(LoggerFactory.getEffectiveLevel(LoggerFactory.ROOT_LOGGER_NAME), grandChild.getLevel());
+    }
+
+    @Test
+    public void logBuilderReuse() throws UnsupportedEncodingException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(output, true);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new PatternLayout("%level %msg%n"), printStream, printStream);
+        appender.setAsync(false);
+        appender.start();
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), appender, INFO);
+
+        // released builders are reused and hold no references
+        LogBuilder first = logger.atInfo().arg("payload");
+        first.log("first {}");
+        Assertions.assertNull(getFieldValue(first, "logger", true));
+        Assertions.assertEquals(0, (int) getFieldValue(first, "argumentCount", true));
+        Assertions.assertSame(first, logger.atInfo());
+        first.log("reused");
+
+        // an abandoned builder is replaced once, reuse resumes with the replacement
+        LogBuilder abandoned = logger.atInfo().arg("abandoned");
+        LogBuilder next = logger.atInfo();
+        Assertions.assertNotSame(abandoned, next);
+        next.arg(1L).log("next {}");
+        Assertions.assertSame(next, logger.atInfo());
+        next.log("reused again");
+        abandoned.log("abandoned {}");
+
+        // a builder acquired while building another does not disturb the outer one
+        logger.atInfo().arg(nestedBuilderArgument(logger)).log("outer {}");
+        Assertions.assertEquals(
+            Arrays.asList("INFO first payload", "INFO reused", "INFO next 1", "INFO reused again", "INFO abandoned abandoned", "INFO inner", "INFO outer nested"),
+            Arrays.asList(output.toString(StandardCharsets.UTF_8.name()).split(System.lineSeparator()))
+        );
+        appender.stop();
+    }
+
+    private static String nestedBuilderArgument(Logger logger) {
+        logger.atInfo().log("inner");
+        return "nested";
+    }
+
+    @Test
+    public void supplierArguments() throws InterruptedException, IllegalAccessException {
+        ByteArrayOutputStream logCollectStream = new ByteArrayOutputStream();
+        PrintStream printStream = new PrintStream(logCollectStream);
+        DefaultPrintStreamAppender appender = new DefaultPrintStreamAppender(new DefaultLineLayout(), printStream, printStream);
+        appender.start();
+        Logger logger = newLogger(LoggerTest.class.getCanonicalName(), appender, INFO);
+        AtomicInteger evaluated = new AtomicInteger();
+
+        // disabled level, never evaluated
+        logger.debugLazy(() -> "debug " + evaluated.incrementAndGet());
+        logger.debug("debug {}", evaluated::incrementAndGet);
+        Supplier<Integer> single = evaluated::incrementAndGet;
+        logger.debug("debug {}", single);
+        Assertions.assertEquals(0, evaluated.get());
+
+        // enabled level, evaluated on the caller thread
+        logger.info("info {} {}", evaluated::incrementAndGet, () -> Thread.currentThread().getName());
+        Assertions.assertEquals(1, evaluated.get());
+        logger.infoLazy(() -> "lazy " + evaluated.incrementAndGet());
+        Assertions.assertEquals(2, evaluated.get());
+        // a single supplier variable binds to info(String, Object), still evaluated on the caller thread
+        logger.info("single {}", single);
+        Assertions.assertEquals(3, evaluated.get());
+        // not ambiguous with the lazy message overload, layouts skip null messages
+        logger.info(null);
+
+        // deferred, evaluated on the consumer thread
+        logger.setDeferSuppliers(true);
+        logger.info("deferred {}", () -> Thread.currentThread().getName());
+        waitingForAsyncAppend(appender);
+        appender.stop();
+
+        String[] logs = logCollectStream.toString().split(System.lineSeparator());
+        Assertions.assertEquals(4, logs.length);
+        Assertions.assertTrue(logs[0].endsWith("- info 1 " + Thread.currentThread().getName()));
+        Assertions.assertTrue(logs[1].endsWith("- lazy 2"));
+        Assertions.assertTrue(logs[2].endsWith("- single 3"));
+        Assertions.assertTrue(logs[3].contains("- deferred "));
+        Assertions.assertFalse(logs[3].endsWith("- deferred " + Thread.currentThread().getName()));
+
+        // the json layout formats the message and scans the arguments for key values, a deferred supplier runs once
+        ByteArrayOutputStream jsonCollectStream = new ByteArrayOutputStream();
+        PrintStream jsonPrintStream = new PrintStream(jsonCollectStream);
+        DefaultPrintStreamAppender jsonAppender = new DefaultPrintStreamAppender(new DefaultJsonLayout(), jsonPrintStream, jsonPrintStream);
+        jsonAppender.start();
+        Logger jsonLogger = newLogger(LoggerTest.class.getCanonicalName(), jsonAppender, INFO);
+        jsonLogger.setDeferSuppliers(true);
+        AtomicInteger jsonEvaluated = new AtomicInteger();
+        Supplier<Integer> counted = jsonEvaluated::incrementAndGet;
+        jsonLogger.info("json {}", counted);
+        Assertions.assertEquals(0, jsonEvaluated.get());
+        waitingForAsyncAppend(jsonAppender);
+        jsonAppender.stop();
+        Assertions.assertEquals(1, jsonEvaluated.get());
+        Assertions.assertTrue(jsonCollectStream.toString().contains("\"message\":\"json 1\""));
     }
 
     @Test
@@ -167,6 +753,7 @@ public class LoggerTest extends BaseLoggerTest {
     public void loadLayout() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
         checkLoadLayout("io.github.supervate.vlog.layout.DefaultJsonLayout", DefaultJsonLayout.class, false);
         checkLoadLayout("io.github.supervate.vlog.layout.DefaultLineLayout", DefaultLineLayout.class, false);
+        checkLoadLayout("io.github.supervate.vlog.layout.PatternLayout", PatternLayout.class, false);
         checkLoadLayout(LoggerTest.class.getCanonicalName(), null, true);
         checkLoadLayout(InvalidEventLayout.class.getCanonicalName(), null, true);
     }
@@ -0,0 +1,184 @@
+package io.github.supervate.vlog;
+
+import io.github.supervate.vlog.common.RingBufferQueue;
+import io.github.supervate.vlog.common.WaitStrategy;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 功能：环形队列测试
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class RingBufferQueueTest {
+
+    @Test
+    public void boundedOfferPoll() throws InterruptedException {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(3);
+        // capacity is rounded up to power of two
+        Assertions.assertEquals(4, queue.capacity());
+        Assertions.assertTrue(queue.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(queue.offer(i));
+        }
+        Assertions.assertFalse(queue.offer(4));
+        Assertions.assertFalse(queue.offer(4, 1, TimeUnit.MILLISECONDS));
+        Assertions.assertEquals(4, queue.size());
+        Assertions.assertEquals(0, queue.peek());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals(i, queue.poll());
+        }
+        Assertions.assertNull(queue.poll());
+        Assertions.assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void wakeUpConsumer() throws InterruptedException {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(4);
+        // a pending wake-up makes the next wait return null without touching the interrupt status
+        queue.wakeUpConsumer();
+        Assertions.assertNull(queue.take());
+        Assertions.assertFalse(Thread.currentThread().isInterrupted());
+        CountDownLatch taking = new CountDownLatch(1);
+        Object[] taken = new Object[1];
+        Thread consumer = new Thread(() -> {
+            taking.countDown();
+            try {
+                taken[0] = queue.take();
+            } catch (InterruptedException e) {
+                taken[0] = e;
+            }
+        });
+        consumer.start();
+        taking.await();
+        queue.wakeUpConsumer();
+        consumer.join(5000);
+        Assertions.assertFalse(consumer.isAlive());
+        Assertions.assertNull(taken[0]);
+        // an interrupt is still reported as such
+        consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+            } catch (InterruptedException e) {
+                taken[0] = e;
+            }
+        });
+        consumer.start();
+        consumer.interrupt();
+        consumer.join(5000);
+        Assertions.assertTrue(taken[0] instanceof InterruptedException);
+        Assertions.assertTrue(queue.offer(1));
+        Assertions.assertEquals(1, queue.take());
+    }
+
+    @Test
+    public void multiProducerOrder() throws InterruptedException {
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            int producers = 4;
+            int eventsPerProducer = 100_000;
+            RingBufferQueue<long[]> queue = new RingBufferQueue<>(1024, waitStrategy);
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        try {
+                            queue.put(new long[]{ producer, i });
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+            long[] next = new long[producers];
+            for (int i = 0; i < producers * eventsPerProducer; i++) {
+                long[] event = queue.take();
+                // per producer fifo
+                Assertions.assertEquals(next[(int) event[0]]++, event[1]);
+            }
+            for (long count : next) {
+                Assertions.assertEquals(eventsPerProducer, count);
+            }
+            Assertions.assertTrue(queue.isEmpty());
+        }
+    }
+
+    /**
+     * mvn test -Dtest=RingBufferQueueTest -Dvt.vlog.benchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "vt.vlog.benchmark", matches = "true")
+    public void benchMark() throws InterruptedException {
+        int capacity = 65536;
+        int events = 4_000_000;
+        for (int producers : new int[]{ 1, 4, 16, 64 }) {
+            benchMark("LinkedBlockingQueue", LinkedBlockingQueue::new, producers, events);
+            for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+                benchMark("RingBufferQueue-" + waitStrategy, () -> new RingBufferQueue<>(capacity, waitStrategy), producers, events);
+            }
+        }
+    }
+
+    private static void benchMark(
+        String name,
+        Supplier<BlockingQueue<Long>> queueSupplier,
+        int producers,
+        int events
+    ) throws InterruptedException {
+        BlockingQueue<Long> queue = queueSupplier.get();
+        int eventsPerProducer = events / producers;
+        int total = eventsPerProducer * producers;
+        // only sample latency of every 64th event, keep the consumer cheap
+        int sampleMask = 63;
+        long[] latencies = new long[total / (sampleMask + 1) + 1];
+        CountDownLatch startLatch = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        queue.put((i & sampleMask) == 0 ? System.nanoTime() : 0L);
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+        }
+        int sampled = 0;
+        long start = System.nanoTime();
+        startLatch.countDown();
+        for (int i = 0; i < total; i++) {
+            long sendTime = queue.take();
+            if (sendTime != 0 && sampled < latencies.length) {
+                latencies[sampled++] = System.nanoTime() - sendTime;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long[] sorted = Arrays.copyOf(latencies, sampled);
+        Arrays.sort(sorted);
+        System.out.printf(
+            "%-30s producers: %2d, throughput: %6.2f M events/s, latency mean: %8.1f us, p99: %8.1f us%n",
+            name,
+            producers,
+            total * 1000.0 / elapsed,
+            Arrays.stream(sorted).average().orElse(0) / 1000,
+            sorted.length == 0 ? 0 : sorted[(int) (sorted.length * 0.99)] / 1000.0
+        );
+    }
+
+}
@@ -0,0 +1,57 @@
+package io.github.supervate.vlog;
+
+import io.github.supervate.vlog.common.TextEncoder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 功能：文本编码器测试
+ *
+ * @author supervate
+ * @since 2024/04/27
+ * <p>
+ * All rights Reserved.
+ */
+public class TextEncoderTest {
+
+    @Test
+    public void encodeMatchesString() {
+        TextEncoder encoder = new TextEncoder();
+        String[] texts = {
+            "",
+            "plain ascii line\n",
+            "中文日志 mixed with ascii",
+            "emoji 😀 and é",
+            "lone surrogate \uD800 end"
+        };
+        for (String text : texts) {
+            byte[] expected = text.getBytes(StandardCharsets.UTF_8);
+            Assertions.assertEquals(expected.length, encoder.encodedLength(text), text);
+            // heap buffer
+            ByteBuffer heap = ByteBuffer.allocate(expected.length + 8);
+            heap.put((byte) '>');
+            encoder.encode(text, heap);
+            Assertions.assertEquals(expected.length + 1, heap.position(), text);
+            byte[] actual = new byte[expected.length];
+            heap.flip().position(1);
+            heap.get(actual);
+            Assertions.assertArrayEquals(expected, actual, text);
+            // direct buffer
+            ByteBuffer direct = ByteBuffer.allocateDirect(expected.length);
+            encoder.encode(new StringBuilder(text), direct);
+            direct.flip();
+            actual = new byte[direct.remaining()];
+            direct.get(actual);
+            Assertions.assertArrayEquals(expected, actual, text);
+            // internal scratch
+            ByteBuffer scratch = encoder.encode(text);
+            actual = new byte[scratch.remaining()];
+            scratch.get(actual);
+            Assertions.assertArrayEquals(expected, actual, text);
+        }
+    }
+
+}